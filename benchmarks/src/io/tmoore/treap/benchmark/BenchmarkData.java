@@ -0,0 +1,53 @@
+package io.tmoore.treap.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic benchmark inputs, so every implementation and every run sees the same keys.
+ */
+final class BenchmarkData {
+    static final long SEED = 0x5EED_7EA9L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generate distinct keys in random order. Keys are drawn from twice the requested range, so about
+     * half of all other values in that range are misses.
+     *
+     * @param size the number of keys
+     * @return the distinct keys, shuffled
+     */
+    static List<Integer> distinctKeys(int size) {
+        final SplittableRandom random = new SplittableRandom(SEED);
+        final Set<Integer> keys = new HashSet<>(size * 2);
+        while (keys.size() < size) {
+            keys.add(random.nextInt(size * 2));
+        }
+        final List<Integer> shuffled = new ArrayList<>(keys);
+        Collections.shuffle(shuffled, new Random(SEED));
+        return shuffled;
+    }
+
+    /**
+     * Generate lookup keys spread over the same range as {@link #distinctKeys(int)}.
+     *
+     * @param count the number of probes, which must be a power of two
+     * @param size  the key count the range was generated for
+     * @return the probe keys
+     */
+    static Integer[] probes(int count, int size) {
+        final SplittableRandom random = new SplittableRandom(SEED + 1);
+        final Integer[] probes = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            probes[i] = random.nextInt(size * 2);
+        }
+        return probes;
+    }
+}
@@ -0,0 +1,77 @@
+package io.tmoore.treap.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read-mostly workload shared by 64 threads: 63 readers probing the set while one writer removes and
+ * re-adds present keys. Only the thread-safe implementations take part.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentReadBenchmark {
+    private static final int PROBE_COUNT = 1 << 16;
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    @Param({"CONCURRENT_TREAP", "CONCURRENT_SKIP_LIST_SET"})
+    SetImplementation implementation;
+
+    private Set<Integer> set;
+    private Integer[] present;
+    private Integer[] probes;
+
+    @Setup
+    public void setup() {
+        final List<Integer> keys = BenchmarkData.distinctKeys(size);
+        set = implementation.create(keys);
+        present = new Integer[PROBE_COUNT];
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            present[i] = keys.get(i % size);
+        }
+        probes = BenchmarkData.probes(PROBE_COUNT, size);
+    }
+
+    private static int next() {
+        return ThreadLocalRandom.current().nextInt(PROBE_COUNT);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(63)
+    public boolean contains() {
+        return set.contains(probes[next()]);
+    }
+
+    /**
+     * Removes a present key and adds it back, so the set size stays fixed across invocations.
+     */
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public boolean removeThenAdd() {
+        final Integer key = present[next()];
+        return set.remove(key) & set.add(key);
+    }
+}
@@ -0,0 +1,55 @@
+package io.tmoore.treap.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk construction of a whole set, from already-sorted input and from shuffled input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConstructionBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    @Param
+    SetImplementation implementation;
+
+    private List<Integer> shuffled;
+    private SortedSet<Integer> sorted;
+
+    @Setup
+    public void setup() {
+        shuffled = BenchmarkData.distinctKeys(size);
+        sorted = new TreeSet<>(shuffled);
+    }
+
+    @Benchmark
+    public Set<Integer> fromSorted() {
+        return implementation.create(sorted);
+    }
+
+    @Benchmark
+    public Set<Integer> fromShuffled() {
+        return implementation.create(shuffled);
+    }
+}
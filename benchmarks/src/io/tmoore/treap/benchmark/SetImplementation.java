@@ -0,0 +1,59 @@
+package io.tmoore.treap.benchmark;
+
+import io.tmoore.treap.ArrayTreap;
+import io.tmoore.treap.ConcurrentTreap;
+import io.tmoore.treap.PersistentTreap;
+import io.tmoore.treap.PriorityGenerator;
+import io.tmoore.treap.Treap;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The sorted set implementations compared by the benchmarks: {@link Treap}, the array-backed
+ * {@link ArrayTreap}, the thread-safe {@link ConcurrentTreap}, and two JDK baselines. {@link Treap}s use a seeded {@link PriorityGenerator}, so
+ * every run benchmarks the same tree shape.
+ */
+public enum SetImplementation {
+    TREAP {
+        @Override
+        Set<Integer> create(Collection<Integer> contents) {
+            return new Treap<>(contents, PriorityGenerator.seeded(BenchmarkData.SEED));
+        }
+    },
+    ARRAY_TREAP {
+        @Override
+        Set<Integer> create(Collection<Integer> contents) {
+            return new ArrayTreap<>(contents, PriorityGenerator.seeded(BenchmarkData.SEED));
+        }
+    },
+    CONCURRENT_TREAP {
+        @Override
+        Set<Integer> create(Collection<Integer> contents) {
+            return new ConcurrentTreap<>(PersistentTreap.copyOf(contents, PriorityGenerator.seeded(BenchmarkData.SEED)));
+        }
+    },
+    TREE_SET {
+        @Override
+        Set<Integer> create(Collection<Integer> contents) {
+            return new TreeSet<>(contents);
+        }
+    },
+    CONCURRENT_SKIP_LIST_SET {
+        @Override
+        Set<Integer> create(Collection<Integer> contents) {
+            return new ConcurrentSkipListSet<>(contents);
+        }
+    };
+
+    /**
+     * Create a new set of this implementation holding the given elements, using its own bulk
+     * constructor.
+     *
+     * @param contents the initial elements
+     * @return the new set
+     */
+    abstract Set<Integer> create(Collection<Integer> contents);
+}
@@ -0,0 +1,102 @@
+package io.tmoore.treap.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-element operations and whole-set traversals against a pre-populated set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SetOperationsBenchmark {
+    private static final int PROBE_COUNT = 1 << 16;
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    @Param
+    SetImplementation implementation;
+
+    private Set<Integer> set;
+    private Integer[] present;
+    private Integer[] probes;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        final List<Integer> keys = BenchmarkData.distinctKeys(size);
+        set = implementation.create(keys);
+        present = new Integer[PROBE_COUNT];
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            present[i] = keys.get(i % size);
+        }
+        probes = BenchmarkData.probes(PROBE_COUNT, size);
+    }
+
+    private int next() {
+        return cursor++ & (PROBE_COUNT - 1);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probes[next()]);
+    }
+
+    /**
+     * Removes a present key and adds it back, so the set size stays fixed across invocations.
+     */
+    @Benchmark
+    public boolean removeThenAdd() {
+        final Integer key = present[next()];
+        return set.remove(key) & set.add(key);
+    }
+
+    /**
+     * Adds a probe key and removes it again if it was new, so the set size stays fixed across
+     * invocations.
+     */
+    @Benchmark
+    public boolean addThenRemove() {
+        final Integer key = probes[next()];
+        return set.add(key) && set.remove(key);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long iterate() {
+        long sum = 0;
+        for (Integer value : set) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long streamSum() {
+        return set.stream().mapToLong(Integer::longValue).sum();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long parallelStreamSum() {
+        return set.parallelStream().mapToLong(Integer::longValue).sum();
+    }
+}
@@ -0,0 +1,210 @@
+package io.tmoore.treap;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * A {@link Treap} whose nodes also cache an {@link Aggregator}'s summary of their subtree, kept up to
+ * date through rotations, insertions, removals, splits and merges. This answers aggregate queries over
+ * any key range in O(log n), by combining the cached summaries of the O(log n) subtrees which exactly
+ * cover the range.
+ *
+ * @param <T> the element type
+ * @param <A> the summary type
+ */
+public class AggregatingTreap<T extends Comparable<T>, A> extends Treap<T> {
+    private final Aggregator<? super T, A> aggregator;
+
+    // CONSTRUCTORS
+
+    @SuppressWarnings("WeakerAccess")
+    public AggregatingTreap(Aggregator<? super T, A> aggregator) {
+        this(aggregator, PriorityGenerator.threadLocal());
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public AggregatingTreap(Aggregator<? super T, A> aggregator, PriorityGenerator priorities) {
+        super(priorities);
+        this.aggregator = Objects.requireNonNull(aggregator);
+    }
+
+    /**
+     * Create an {@link AggregatingTreap} holding the distinct elements of the given collection.
+     *
+     * @param aggregator     the summary to maintain
+     * @param fromCollection the initial elements
+     * @see Treap#Treap(Collection)
+     */
+    @SuppressWarnings("WeakerAccess")
+    public AggregatingTreap(Aggregator<? super T, A> aggregator, Collection<? extends T> fromCollection) {
+        this(aggregator);
+        addAll(fromCollection);
+    }
+
+    private AggregatingTreap(Aggregator<? super T, A> aggregator, TreapNode<T> root,
+                             PriorityGenerator priorities) {
+        super(root, priorities);
+        this.aggregator = aggregator;
+    }
+
+    @Override
+    TreapNode<T> newNode(T value, int priority) {
+        return new AggregateNode<>(value, priority, aggregator);
+    }
+
+    @Override
+    Treap<T> newTreap(TreapNode<T> root) {
+        return new AggregatingTreap<T, A>(aggregator, root, getPriorities());
+    }
+
+    /**
+     * Nodes can only be shared with a {@link Treap} maintaining the same aggregate.
+     */
+    @Override
+    Object nodeType() {
+        return aggregator;
+    }
+
+    // AGGREGATES
+
+    /**
+     * @return the summary of every element
+     */
+    public A aggregate() {
+        return aggregateOf(getRoot());
+    }
+
+    /**
+     * Summarize the elements from {@code fromElement}, inclusive, to {@code toElement}, exclusive, as
+     * {@link #subSet(Object, Object)} would hold them.
+     *
+     * @param fromElement low endpoint of the range, inclusive
+     * @param toElement   high endpoint of the range, exclusive
+     * @return the summary of the elements in range
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public A aggregate(T fromElement, T toElement) {
+        return aggregate(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Summarize the elements between the given bounds, in O(log n). The search paths to the two bounds
+     * share a prefix down to the first node in range; below it, the lower path contributes every node
+     * in range together with its right subtree, and the upper path every node in range together with
+     * its left subtree.
+     *
+     * @param fromElement   low endpoint of the range
+     * @param fromInclusive whether the low endpoint is itself in range
+     * @param toElement     high endpoint of the range
+     * @param toInclusive   whether the high endpoint is itself in range
+     * @return the summary of the elements in range
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public A aggregate(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        Objects.requireNonNull(fromElement);
+        Objects.requireNonNull(toElement);
+        if (fromElement.compareTo(toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        // Descend to the first node inside the range, where the two search paths part.
+        TreapNode<T> fork = getRoot();
+        while (fork != null) {
+            if (!aboveLow(fork.getValue(), fromElement, fromInclusive)) {
+                fork = fork.getRight();
+            }
+            else if (!belowHigh(fork.getValue(), toElement, toInclusive)) {
+                fork = fork.getLeft();
+            }
+            else {
+                break;
+            }
+        }
+        if (fork == null) {
+            return aggregator.identity();
+        }
+
+        // Everything right of the lower path is in range, so it is summarized from the right.
+        A lower = aggregator.identity();
+        for (TreapNode<T> current = fork.getLeft(); current != null; ) {
+            if (aboveLow(current.getValue(), fromElement, fromInclusive)) {
+                lower = aggregator.combine(aggregator.lift(current.getValue()),
+                                           aggregator.combine(aggregateOf(current.getRight()), lower));
+                current = current.getLeft();
+            }
+            else {
+                current = current.getRight();
+            }
+        }
+
+        // Everything left of the upper path is in range, so it is summarized from the left.
+        A upper = aggregator.identity();
+        for (TreapNode<T> current = fork.getRight(); current != null; ) {
+            if (belowHigh(current.getValue(), toElement, toInclusive)) {
+                upper = aggregator.combine(aggregator.combine(upper, aggregateOf(current.getLeft())),
+                                           aggregator.lift(current.getValue()));
+                current = current.getRight();
+            }
+            else {
+                current = current.getLeft();
+            }
+        }
+
+        return aggregator.combine(aggregator.combine(lower, aggregator.lift(fork.getValue())), upper);
+    }
+
+    private static <T extends Comparable<T>> boolean aboveLow(T value, T low, boolean inclusive) {
+        final int comparison = value.compareTo(low);
+        return comparison > 0 || inclusive && comparison == 0;
+    }
+
+    private static <T extends Comparable<T>> boolean belowHigh(T value, T high, boolean inclusive) {
+        final int comparison = value.compareTo(high);
+        return comparison < 0 || inclusive && comparison == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private A aggregateOf(TreapNode<T> node) {
+        return node == null ? aggregator.identity() : ((AggregateNode<T, A>) node).aggregate;
+    }
+
+    // OPERATIONS TAKING ANOTHER TREAP
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return an {@link AggregatingTreap} with the same {@link Aggregator}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public AggregatingTreap<T, A> split(T key) {
+        return (AggregatingTreap<T, A>) super.split(key);
+    }
+
+    /**
+     * A node which also caches the summary of its subtree.
+     */
+    private static final class AggregateNode<T, A> extends TreapNode<T> {
+        private final Aggregator<? super T, A> aggregator;
+        private A aggregate;
+
+        private AggregateNode(T value, int priority, Aggregator<? super T, A> aggregator) {
+            super(value, priority);
+            this.aggregator = aggregator;
+            this.aggregate = aggregator.lift(value);
+        }
+
+        @Override
+        void updateSize() {
+            super.updateSize();
+            aggregate = aggregator.combine(aggregator.combine(aggregateOf(getLeft()), aggregator.lift(getValue())),
+                                           aggregateOf(getRight()));
+        }
+
+        @SuppressWarnings("unchecked")
+        private A aggregateOf(TreapNode<T> node) {
+            return node == null ? aggregator.identity() : ((AggregateNode<T, A>) node).aggregate;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.tmoore.treap;
+
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * An associative summary of a run of consecutive elements, such as a sum, minimum, maximum or count,
+ * which an {@link AggregatingTreap} caches for every subtree.
+ *
+ * <p>{@link #combine} must be associative, and {@link #identity()} must be its identity on both sides.
+ * It need not be commutative: the left operand always summarizes the lesser elements.
+ *
+ * @param <T> the element type
+ * @param <A> the summary type
+ */
+public interface Aggregator<T, A> {
+    /**
+     * @return the summary of no elements
+     */
+    A identity();
+
+    /**
+     * @param value an element
+     * @return the summary of that element alone
+     */
+    A lift(T value);
+
+    /**
+     * Summarize two adjacent runs of elements.
+     *
+     * @param left  the summary of the lesser run
+     * @param right the summary of the greater run
+     * @return the summary of both runs together
+     */
+    A combine(A left, A right);
+
+    /**
+     * Create an {@link Aggregator} from its three parts.
+     *
+     * @param identity the summary of no elements
+     * @param lift     summarizes a single element
+     * @param combine  summarizes two adjacent runs, lesser first
+     * @param <T>      the element type
+     * @param <A>      the summary type
+     * @return the {@link Aggregator}
+     */
+    static <T, A> Aggregator<T, A> of(A identity, Function<? super T, ? extends A> lift, BinaryOperator<A> combine) {
+        Objects.requireNonNull(lift);
+        Objects.requireNonNull(combine);
+        return new Aggregator<T, A>() {
+            @Override
+            public A identity() {
+                return identity;
+            }
+
+            @Override
+            public A lift(T value) {
+                return lift.apply(value);
+            }
+
+            @Override
+            public A combine(A left, A right) {
+                return combine.apply(left, right);
+            }
+        };
+    }
+}
@@ -0,0 +1,566 @@
+package io.tmoore.treap;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A treap whose nodes live in parallel arrays rather than as individual objects. A node is an
+ * index into the {@link #left}, {@link #right}, {@link #priority}, {@link #size} and {@link #keys}
+ * arrays, so the only objects the garbage collector traces are those arrays and the elements
+ * themselves, and lookups and in-order scans chase {@code int} indices through a few dense arrays
+ * instead of references scattered around the heap. Slots freed by removal are kept on a free list
+ * threaded through {@link #left} and reused by later insertions.
+ *
+ * <p>The arrays grow by doubling and never shrink, except through {@link #clear()}.
+ */
+public class ArrayTreap<T extends Comparable<T>> extends AbstractSet<T> {
+    /**
+     * The null node. Slot 0 is never allocated, and its size is always 0, so children can be read
+     * without null checks.
+     */
+    private static final int NIL = 0;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] left;
+    private int[] right;
+    private int[] priority;
+    private int[] size;
+    private Object[] keys;
+
+    private int root = NIL;
+
+    /**
+     * The lowest slot which has never been allocated.
+     */
+    private int highWater = 1;
+
+    /**
+     * Head of the list of freed slots, linked through {@link #left}.
+     */
+    private int free = NIL;
+
+    private int modCount = 0;
+
+    private final PriorityGenerator priorities;
+
+    /**
+     * Scratch stack for the search path of {@link #add} and {@link #remove}, reused between calls.
+     */
+    private int[] path = new int[32];
+
+    // CONSTRUCTORS
+
+    @SuppressWarnings("WeakerAccess")
+    public ArrayTreap() {
+        this(DEFAULT_CAPACITY, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Create an empty {@link ArrayTreap} with room for the given number of elements before its arrays
+     * have to grow.
+     *
+     * @param capacity   the initial number of node slots
+     * @param priorities the source of node priorities
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ArrayTreap(int capacity, PriorityGenerator priorities) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        this.priorities = Objects.requireNonNull(priorities);
+        allocate(capacity + 1);
+    }
+
+    /**
+     * Create an {@link ArrayTreap} holding the distinct elements of the given collection, built in
+     * linear time once they are in ascending order.
+     *
+     * @param fromCollection the initial elements
+     * @see Treap#Treap(Collection)
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ArrayTreap(Collection<? extends T> fromCollection) {
+        this(fromCollection, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Create an {@link ArrayTreap} holding the distinct elements of the given collection, with node
+     * priorities drawn from the given generator.
+     *
+     * @param fromCollection the initial elements
+     * @param priorities     the source of node priorities
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ArrayTreap(Collection<? extends T> fromCollection, PriorityGenerator priorities) {
+        this(fromCollection.size(), priorities);
+        build(Treap.sortedDistinct(fromCollection));
+    }
+
+    private void allocate(int capacity) {
+        left = new int[capacity];
+        right = new int[capacity];
+        priority = new int[capacity];
+        size = new int[capacity];
+        keys = new Object[capacity];
+    }
+
+    // CORE COLLECTION METHODS
+
+    @Override
+    public int size() {
+        return size[root];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    @Override
+    public void clear() {
+        allocate(DEFAULT_CAPACITY);
+        root = NIL;
+        highWater = 1;
+        free = NIL;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T key(int node) {
+        return (T) keys[node];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null || root == NIL) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        final T item = (T) o;
+        int current = root;
+        while (current != NIL) {
+            final int comparison = item.compareTo(key(current));
+            if (comparison == 0) {
+                return true;
+            }
+            current = comparison < 0 ? left[current] : right[current];
+        }
+        return false;
+    }
+
+    /**
+     * Add the given item, restoring the heap property with rotations along the insertion path only.
+     *
+     * @param item the item to add
+     * @return {@code true} if the item was not already present
+     */
+    @Override
+    public boolean add(T item) {
+        Objects.requireNonNull(item);
+        if (root == NIL) {
+            root = newNode(item);
+            modCount++;
+            return true;
+        }
+
+        int depth = 0;
+        int current = root;
+        final int node;
+        while (true) {
+            final int comparison = item.compareTo(key(current));
+            if (comparison == 0) {
+                return false;
+            }
+
+            push(depth++, current);
+            if (comparison < 0) {
+                if (left[current] == NIL) {
+                    node = newNode(item);
+                    left[current] = node;
+                    break;
+                }
+                current = left[current];
+            }
+            else {
+                if (right[current] == NIL) {
+                    node = newNode(item);
+                    right[current] = node;
+                    break;
+                }
+                current = right[current];
+            }
+        }
+
+        // Walk back up, growing each ancestor and lifting the new node while it outranks its parent.
+        boolean rising = true;
+        while (depth > 0) {
+            final int parent = path[--depth];
+            size[parent]++;
+            if (rising && priority[node] > priority[parent]) {
+                final int lifted = left[parent] == node ? rotateRight(parent) : rotateLeft(parent);
+                if (depth == 0) {
+                    root = lifted;
+                }
+                else if (left[path[depth - 1]] == parent) {
+                    left[path[depth - 1]] = lifted;
+                }
+                else {
+                    right[path[depth - 1]] = lifted;
+                }
+            }
+            else {
+                rising = false;
+            }
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Remove the given item, unlinking its node by merging its children in its place and returning the
+     * slot to the free list.
+     *
+     * @param o the item to remove
+     * @return {@code true} if the item was present
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null || root == NIL) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        final T item = (T) o;
+        int depth = 0;
+        int current = root;
+        while (true) {
+            if (current == NIL) {
+                return false;
+            }
+            final int comparison = item.compareTo(key(current));
+            if (comparison == 0) {
+                break;
+            }
+            push(depth++, current);
+            current = comparison < 0 ? left[current] : right[current];
+        }
+
+        final int replacement = merge(left[current], right[current]);
+        if (depth == 0) {
+            root = replacement;
+        }
+        else if (left[path[depth - 1]] == current) {
+            left[path[depth - 1]] = replacement;
+        }
+        else {
+            right[path[depth - 1]] = replacement;
+        }
+
+        while (depth > 0) {
+            size[path[--depth]]--;
+        }
+        release(current);
+        modCount++;
+        return true;
+    }
+
+    // ORDER STATISTICS
+
+    /**
+     * Get the least element.
+     *
+     * @return the least element
+     * @throws NoSuchElementException if this {@link ArrayTreap} is empty
+     */
+    public T first() {
+        if (root == NIL) {
+            throw new NoSuchElementException("The ArrayTreap is empty.");
+        }
+        int current = root;
+        while (left[current] != NIL) {
+            current = left[current];
+        }
+        return key(current);
+    }
+
+    /**
+     * Get the greatest element.
+     *
+     * @return the greatest element
+     * @throws NoSuchElementException if this {@link ArrayTreap} is empty
+     */
+    public T last() {
+        if (root == NIL) {
+            throw new NoSuchElementException("The ArrayTreap is empty.");
+        }
+        int current = root;
+        while (right[current] != NIL) {
+            current = right[current];
+        }
+        return key(current);
+    }
+
+    /**
+     * Get the element at the given position in natural ascending order.
+     *
+     * @param index zero-based position of the element
+     * @return the element at that position
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        int current = root;
+        while (true) {
+            final int leftSize = size[left[current]];
+            if (index < leftSize) {
+                current = left[current];
+            }
+            else if (index == leftSize) {
+                return key(current);
+            }
+            else {
+                index -= leftSize + 1;
+                current = right[current];
+            }
+        }
+    }
+
+    /**
+     * Traverses {@link ArrayTreap} elements in natural ascending order.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ArrayTreapIterator();
+    }
+
+    // NODE STORAGE
+
+    private void push(int depth, int node) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+        }
+        path[depth] = node;
+    }
+
+    private int newNode(T item) {
+        final int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        }
+        else {
+            if (highWater == keys.length) {
+                final int capacity = Math.max(DEFAULT_CAPACITY, keys.length * 2);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                priority = Arrays.copyOf(priority, capacity);
+                size = Arrays.copyOf(size, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            node = highWater++;
+        }
+
+        left[node] = NIL;
+        right[node] = NIL;
+        priority[node] = priorities.nextPriority();
+        size[node] = 1;
+        keys[node] = item;
+        return node;
+    }
+
+    private void release(int node) {
+        keys[node] = null;
+        right[node] = NIL;
+        size[node] = 0;
+        left[node] = free;
+        free = node;
+    }
+
+    // TREE OPERATIONS
+
+    private void updateSize(int node) {
+        size[node] = 1 + size[left[node]] + size[right[node]];
+    }
+
+    /**
+     * @return the new local root node
+     */
+    private int rotateRight(int node) {
+        final int l = left[node];
+        left[node] = right[l];
+        right[l] = node;
+        updateSize(node);
+        updateSize(l);
+        return l;
+    }
+
+    /**
+     * @return the new local root node
+     */
+    private int rotateLeft(int node) {
+        final int r = right[node];
+        right[node] = left[r];
+        left[r] = node;
+        updateSize(node);
+        updateSize(r);
+        return r;
+    }
+
+    /**
+     * Merge two treaps, where every key in {@code a} is less than every key in {@code b}.
+     *
+     * @see TreapNode#merge(TreapNode, TreapNode)
+     */
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+
+        // Whichever root wins at each step ends up holding everything still left to merge, so sizes can
+        // be fixed on the way down.
+        int mergedRoot = NIL;
+        int parent = NIL;
+        boolean attachRight = false;
+        while (a != NIL && b != NIL) {
+            final int chosen;
+            final int mergedSize = size[a] + size[b];
+            final boolean fromLeft = priority[a] > priority[b];
+            if (fromLeft) {
+                chosen = a;
+                a = right[a];
+            }
+            else {
+                chosen = b;
+                b = left[b];
+            }
+            size[chosen] = mergedSize;
+
+            if (parent == NIL) {
+                mergedRoot = chosen;
+            }
+            else if (attachRight) {
+                right[parent] = chosen;
+            }
+            else {
+                left[parent] = chosen;
+            }
+            parent = chosen;
+            attachRight = fromLeft;
+        }
+
+        final int rest = a == NIL ? b : a;
+        if (attachRight) {
+            right[parent] = rest;
+        }
+        else {
+            left[parent] = rest;
+        }
+        return mergedRoot;
+    }
+
+    /**
+     * Build the tree from values in strictly ascending order, in linear time.
+     *
+     * @see TreapNode#build(Iterable, PriorityGenerator)
+     */
+    private void build(List<T> sorted) {
+        // The right spine of the tree so far, deepest on top.
+        final int[] spine = new int[sorted.size()];
+        int top = 0;
+
+        for (T value : sorted) {
+            final int node = newNode(value);
+            int popped = NIL;
+            while (top > 0 && priority[spine[top - 1]] < priority[node]) {
+                popped = spine[--top];
+                updateSize(popped);
+            }
+            left[node] = popped;
+            if (top > 0) {
+                right[spine[top - 1]] = node;
+            }
+            spine[top++] = node;
+        }
+
+        while (top > 0) {
+            root = spine[--top];
+            updateSize(root);
+        }
+    }
+
+    /**
+     * An in-order iterator which keeps only the pending left spine on its stack, as node indices.
+     */
+    private class ArrayTreapIterator implements Iterator<T> {
+        private int[] stack = new int[32];
+        private int depth = 0;
+        private T lastReturned = null;
+        private int expectedModCount = modCount;
+
+        private ArrayTreapIterator() {
+            pushLeftSpine(root);
+        }
+
+        private void pushLeftSpine(int node) {
+            for (int n = node; n != NIL; n = left[n]) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = n;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (depth == 0) {
+                throw new NoSuchElementException("The Iterator is empty.");
+            }
+
+            final int next = stack[--depth];
+            pushLeftSpine(right[next]);
+            lastReturned = key(next);
+            return lastReturned;
+        }
+
+        /**
+         * Removal merges the node's children in its place, which never relinks the right subtrees of the
+         * nodes still pending on the stack, so iteration can continue.
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("remove called twice or before next was ever called");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            ArrayTreap.this.remove(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package io.tmoore.treap;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe set backed by a {@link PersistentTreap}. The current version is held in an
+ * {@link AtomicReference}; readers take it with a single volatile read and never block or retry, and
+ * every read, iteration or stream sees one consistent version for its whole lifetime. Writers derive a
+ * new version from the current one and publish it with a compare-and-set, retrying against the newer
+ * version if another writer got there first.
+ *
+ * <p>Bulk operations such as {@link #addAll} and {@link #removeAll} apply everything passed to one call
+ * to one version and publish it with a single compare-and-set, so concurrent readers see either none or
+ * all of the call's changes. Concurrent {@link #add} calls are combined as well: each queues its element,
+ * and whichever caller becomes the combiner adds every queued element to one version and publishes it
+ * with one compare-and-set, while the others wait for their element to be published. Under contention,
+ * many inserts then cost one derived path each but share a single publish.
+ *
+ * <p>A failed compare-and-set throws away the whole derived version. So that a large batch cannot keep
+ * losing to small writes, a writer whose compare-and-set fails {@link #OPTIMISTIC_ATTEMPTS} times stops
+ * retrying freely and takes a writer lock, which every writer then queues on until none is waiting. It
+ * then retries at most once more for each other writer already in flight.
+ *
+ * <p>Iterators and spliterators are snapshots: they never throw
+ * {@link java.util.ConcurrentModificationException}, and they do not see changes made after they
+ * were created.
+ */
+public class ConcurrentTreap<T extends Comparable<T>> extends AbstractSet<T> {
+    /**
+     * The number of failed compare-and-sets after which a writer queues on the writer lock.
+     */
+    static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    private final AtomicReference<PersistentTreap<T>> current;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Writers holding or waiting for {@link #writeLock}. While there are any, new writers queue as well.
+     */
+    private final AtomicInteger queuedWriters = new AtomicInteger();
+
+    /**
+     * Elements passed to {@link #add} and not yet taken by a combiner.
+     */
+    private final Queue<PendingAdd<T>> pendingAdds = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Held by the caller of {@link #add} which is combining the pending elements into one version.
+     */
+    private final ReentrantLock combiner = new ReentrantLock();
+
+    private final LongAdder publishes = new LongAdder();
+
+    // CONSTRUCTORS
+
+    @SuppressWarnings("WeakerAccess")
+    public ConcurrentTreap() {
+        this(PersistentTreap.empty());
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public ConcurrentTreap(Collection<? extends T> fromCollection) {
+        this(PersistentTreap.copyOf(fromCollection));
+    }
+
+    /**
+     * Create a {@link ConcurrentTreap} whose initial contents are the given version.
+     *
+     * @param initial the initial version
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ConcurrentTreap(PersistentTreap<T> initial) {
+        current = new AtomicReference<>(Objects.requireNonNull(initial));
+    }
+
+    /**
+     * Get the current version. It is immutable, so it can be queried repeatedly without observing
+     * concurrent writes.
+     *
+     * @return the current contents
+     */
+    public PersistentTreap<T> snapshot() {
+        return current.get();
+    }
+
+    /**
+     * @return the number of versions published since construction
+     */
+    long publishCount() {
+        return publishes.sum();
+    }
+
+    // READS
+
+    @Override
+    public int size() {
+        return current.get().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current.get().isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        final PersistentTreap<T> version = current.get();
+        if (!version.accepts(o)) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        final T item = (T) o;
+        return version.contains(item);
+    }
+
+    /**
+     * @throws NoSuchElementException if this {@link ConcurrentTreap} is empty
+     */
+    public T first() {
+        return current.get().first();
+    }
+
+    /**
+     * @throws NoSuchElementException if this {@link ConcurrentTreap} is empty
+     */
+    public T last() {
+        return current.get().last();
+    }
+
+    /**
+     * Traverses the version current at the time of the call, in natural ascending order.
+     * {@link Iterator#remove()} removes the last element returned from this set, not from the snapshot.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<T> snapshot = current.get().iterator();
+        return new Iterator<T>() {
+            private T lastReturned = null;
+
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public T next() {
+                lastReturned = snapshot.next();
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException("remove called twice or before next was ever called");
+                }
+                ConcurrentTreap.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return current.get().spliterator();
+    }
+
+    // WRITES
+
+    /**
+     * Replace the current version with the result of applying the given function to it, retrying
+     * until the result is published against the version it was derived from. The function may be
+     * called more than once and must not have side effects. After {@link #OPTIMISTIC_ATTEMPTS} failed
+     * attempts, or while another writer is queued, the caller queues on the writer lock, so it makes
+     * at most one more attempt for each other writer already in flight.
+     *
+     * @param update derives the next version from the current one
+     * @return {@code true} if the version changed
+     */
+    public boolean update(UnaryOperator<PersistentTreap<T>> update) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS && queuedWriters.get() == 0; attempt++) {
+            final PersistentTreap<T> expected = current.get();
+            final PersistentTreap<T> next = update.apply(expected);
+            if (next == expected) {
+                return false;
+            }
+            if (current.compareAndSet(expected, next)) {
+                publishes.increment();
+                return true;
+            }
+        }
+
+        queuedWriters.incrementAndGet();
+        writeLock.lock();
+        try {
+            while (true) {
+                final PersistentTreap<T> expected = current.get();
+                final PersistentTreap<T> next = update.apply(expected);
+                if (next == expected) {
+                    return false;
+                }
+                if (current.compareAndSet(expected, next)) {
+                    publishes.increment();
+                    return true;
+                }
+            }
+        }
+        finally {
+            writeLock.unlock();
+            queuedWriters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Add the given element, combined with the elements of any concurrent calls into one published
+     * version. Returns once a version holding the element has been published.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(T item) {
+        Objects.requireNonNull(item);
+        final PendingAdd<T> request = new PendingAdd<>(item);
+        pendingAdds.add(request);
+        while (request.state == PendingAdd.PENDING) {
+            if (combiner.tryLock()) {
+                try {
+                    combinePendingAdds();
+                }
+                finally {
+                    combiner.unlock();
+                }
+                // An element queued while this caller was combining may have found the combiner busy;
+                // wake the oldest waiter so that it combines in turn.
+                final PendingAdd<T> next = pendingAdds.peek();
+                if (next != null) {
+                    LockSupport.unpark(next.waiter);
+                }
+            }
+            else {
+                LockSupport.park(this);
+            }
+        }
+
+        if (request.state == PendingAdd.UNCOMBINED) {
+            return update(version -> version.add(item));
+        }
+        return request.state == PendingAdd.ADDED;
+    }
+
+    /**
+     * Take every pending element, add them all to one version and publish it, then wake their callers.
+     * If the batch cannot be applied, for instance because one element cannot be compared, each caller
+     * is told to add its own element alone, so only the caller at fault sees the exception.
+     */
+    private void combinePendingAdds() {
+        final List<PendingAdd<T>> batch = new ArrayList<>();
+        for (PendingAdd<T> request = pendingAdds.poll(); request != null; request = pendingAdds.poll()) {
+            batch.add(request);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Filled in again on each attempt, so it holds the outcome of the attempt that was published.
+        final boolean[] added = new boolean[batch.size()];
+        boolean combined = false;
+        try {
+            update(version -> {
+                PersistentTreap<T> next = version;
+                for (int i = 0; i < added.length; i++) {
+                    final PersistentTreap<T> after = next.add(batch.get(i).item);
+                    added[i] = after != next;
+                    next = after;
+                }
+                return next;
+            });
+            combined = true;
+        }
+        catch (RuntimeException e) {
+            // Each caller adds its own element alone instead, and the one at fault sees this again.
+        }
+        finally {
+            for (int i = 0; i < added.length; i++) {
+                final PendingAdd<T> request = batch.get(i);
+                request.state = !combined ? PendingAdd.UNCOMBINED
+                                          : added[i] ? PendingAdd.ADDED : PendingAdd.PRESENT;
+                LockSupport.unpark(request.waiter);
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return update(version -> {
+            if (!version.accepts(o)) {
+                return version;
+            }
+
+            @SuppressWarnings("unchecked")
+            final T item = (T) o;
+            return version.remove(item);
+        });
+    }
+
+    /**
+     * Add every element of the given collection, publishing them together.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        Objects.requireNonNull(c);
+        return update(version -> {
+            PersistentTreap<T> next = version;
+            for (T item : c) {
+                next = next.add(item);
+            }
+            return next;
+        });
+    }
+
+    /**
+     * Remove every element of the given collection, publishing the removals together.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return update(version -> {
+            PersistentTreap<T> next = version;
+            for (Object o : c) {
+                if (next.accepts(o)) {
+                    @SuppressWarnings("unchecked")
+                    final T item = (T) o;
+                    next = next.remove(item);
+                }
+            }
+            return next;
+        });
+    }
+
+    /**
+     * Keep only the elements also in the given collection, publishing the removals together.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return update(version -> {
+            PersistentTreap<T> next = version;
+            for (T item : version) {
+                if (!c.contains(item)) {
+                    next = next.remove(item);
+                }
+            }
+            return next;
+        });
+    }
+
+    @Override
+    public void clear() {
+        update(PersistentTreap::clear);
+    }
+
+    /**
+     * An element passed to {@link #add}, waiting to be published by a combiner.
+     */
+    private static final class PendingAdd<T> {
+        private static final int PENDING = 0;
+        private static final int ADDED = 1;
+        private static final int PRESENT = 2;
+        private static final int UNCOMBINED = 3;
+
+        private final T item;
+        private final Thread waiter = Thread.currentThread();
+        private volatile int state = PENDING;
+
+        private PendingAdd(T item) {
+            this.item = item;
+        }
+    }
+}
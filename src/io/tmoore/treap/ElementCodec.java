@@ -0,0 +1,59 @@
+package io.tmoore.treap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes the elements of a {@link Treap} for {@link TreapIO}. Elements are always written and read in
+ * the {@link Treap}'s order, and each call is given the element before it, so a codec can store just
+ * the difference from it: the gap between two integers, or the suffix after a shared string prefix.
+ * The built-in codecs are most compact for natural ordering, but correct for any.
+ *
+ * @param <T> the element type
+ */
+public interface ElementCodec<T> {
+    /**
+     * Write one element.
+     *
+     * @param previous the element written just before this one, or {@code null} for the first
+     * @param value    the element to write
+     * @param out      the destination
+     * @throws IOException if writing fails
+     */
+    void write(T previous, T value, DataOutput out) throws IOException;
+
+    /**
+     * Read one element.
+     *
+     * @param previous the element read just before this one, or {@code null} for the first
+     * @param in       the source
+     * @return the element
+     * @throws IOException if reading fails or the data is malformed
+     */
+    T read(T previous, DataInput in) throws IOException;
+
+    /**
+     * @return a codec storing each {@link Integer} after the first as a variable-length gap from the
+     * one before, so dense keys take one byte each
+     */
+    static ElementCodec<Integer> integers() {
+        return StandardCodecs.INTEGERS;
+    }
+
+    /**
+     * @return a codec storing each {@link Long} after the first as a variable-length gap from the one
+     * before
+     */
+    static ElementCodec<Long> longs() {
+        return StandardCodecs.LONGS;
+    }
+
+    /**
+     * @return a codec storing each {@link String} as the length of the prefix it shares with the one
+     * before, followed by the rest of it in UTF-8
+     */
+    static ElementCodec<String> strings() {
+        return StandardCodecs.STRINGS;
+    }
+}
@@ -0,0 +1,362 @@
+package io.tmoore.treap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A treap of {@code long} elements, with the same set, order statistic, split and join operations as
+ * {@link Treap}, though it is not one. Keys are stored unboxed in the nodes and compared directly, so
+ * each element costs a single node object and no comparison goes through {@link Comparable#compareTo}.
+ * Iteration and streaming are ascending and unboxed as well.
+ */
+public class LongTreap extends PrimitiveTreap<LongTreap.Node> implements Iterable<Long> {
+
+    // CONSTRUCTORS
+
+    @SuppressWarnings("WeakerAccess")
+    public LongTreap() {
+        this(PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Create an empty {@link LongTreap} whose nodes draw their priorities from the given generator.
+     *
+     * @param priorities the source of node priorities
+     */
+    @SuppressWarnings("WeakerAccess")
+    public LongTreap(PriorityGenerator priorities) {
+        super(priorities);
+    }
+
+    /**
+     * Create a {@link LongTreap} holding the distinct values of the given array. The values are sorted
+     * and then built into a tree in linear time.
+     *
+     * @param values the initial elements
+     */
+    @SuppressWarnings("WeakerAccess")
+    public LongTreap(long... values) {
+        this(PriorityGenerator.threadLocal());
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int distinct = sorted.length == 0 ? 0 : 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        root = build(distinct, i -> new Node(sorted[i], priorities.nextPriority()));
+    }
+
+    private LongTreap(Node root, PriorityGenerator priorities) {
+        this(priorities);
+        this.root = root;
+    }
+
+    // CORE OPERATIONS
+
+    public boolean contains(long value) {
+        Node current = root;
+        while (current != null) {
+            if (value == current.key) {
+                return true;
+            }
+            current = value < current.key ? current.left : current.right;
+        }
+        return false;
+    }
+
+    /**
+     * Add the given value, restoring the heap property with rotations along the insertion path only.
+     *
+     * @param value the value to add
+     * @return {@code true} if the value was not already present
+     */
+    public boolean add(long value) {
+        if (root == null) {
+            root = new Node(value, priorities.nextPriority());
+            return true;
+        }
+
+        Node current = root;
+        final Node node;
+        while (true) {
+            if (value == current.key) {
+                path.clear();
+                return false;
+            }
+
+            path.push(current);
+            if (value < current.key) {
+                if (current.left == null) {
+                    node = current.left = new Node(value, priorities.nextPriority());
+                    break;
+                }
+                current = current.left;
+            }
+            else {
+                if (current.right == null) {
+                    node = current.right = new Node(value, priorities.nextPriority());
+                    break;
+                }
+                current = current.right;
+            }
+        }
+        lift(node);
+        return true;
+    }
+
+    /**
+     * Remove the given value, unlinking its node by merging its children in its place.
+     *
+     * @param value the value to remove
+     * @return {@code true} if the value was present
+     */
+    public boolean remove(long value) {
+        Node current = root;
+        while (true) {
+            if (current == null) {
+                path.clear();
+                return false;
+            }
+            if (value == current.key) {
+                break;
+            }
+            path.push(current);
+            current = value < current.key ? current.left : current.right;
+        }
+        unlink(current);
+        return true;
+    }
+
+    // ORDER STATISTICS
+
+    /**
+     * Get the least element.
+     *
+     * @return the least element
+     * @throws NoSuchElementException if this {@link LongTreap} is empty
+     */
+    public long first() {
+        return firstNode().key;
+    }
+
+    /**
+     * Get the greatest element.
+     *
+     * @return the greatest element
+     * @throws NoSuchElementException if this {@link LongTreap} is empty
+     */
+    public long last() {
+        return lastNode().key;
+    }
+
+    /**
+     * Get the element at the given position in ascending order.
+     *
+     * @param index zero-based position of the element
+     * @return the element at that position
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}
+     */
+    public long get(int index) {
+        return nodeAt(index).key;
+    }
+
+    /**
+     * Find the position of the given element in ascending order.
+     *
+     * @param value the element to look for
+     * @return the zero-based position of the element, or {@code -1} if it is not present
+     */
+    public int rankOf(long value) {
+        int count = 0;
+        Node current = root;
+        while (current != null) {
+            if (value > current.key) {
+                count += Node.size(current.left) + 1;
+                current = current.right;
+            }
+            else if (value < current.key) {
+                current = current.left;
+            }
+            else {
+                return count + Node.size(current.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Count the elements which are strictly less than the given value.
+     *
+     * @param value the upper (exclusive) bound
+     * @return the number of elements less than {@code value}
+     */
+    public int countLessThan(long value) {
+        int count = 0;
+        Node current = root;
+        while (current != null) {
+            if (value > current.key) {
+                count += Node.size(current.left) + 1;
+                current = current.right;
+            }
+            else if (value < current.key) {
+                current = current.left;
+            }
+            else {
+                return count + Node.size(current.left);
+            }
+        }
+        return count;
+    }
+
+    // SPLIT AND JOIN
+
+    /**
+     * Split this {@link LongTreap} around the given key. Every element at or above {@code key} is moved
+     * into the returned {@link LongTreap}, and every element below it stays in this one.
+     *
+     * @param key the least element of the returned {@link LongTreap}, which need not be present
+     * @return a {@link LongTreap} holding the elements greater than or equal to {@code key}
+     * @see Treap#split(Object)
+     */
+    public LongTreap split(long key) {
+        return new LongTreap(splitOff(node -> key <= node.key), priorities);
+    }
+
+    /**
+     * Move every element of the given {@link LongTreap} into this one, leaving {@code other} empty. The two
+     * key ranges must not overlap.
+     *
+     * @param other the {@link LongTreap} to absorb
+     * @throws IllegalArgumentException if the key ranges of the two {@link LongTreap}s overlap
+     * @see Treap#join(Treap)
+     */
+    public void join(LongTreap other) {
+        absorb(other);
+    }
+
+    // ITERATION AND STREAMING
+
+    /**
+     * Traverses {@link LongTreap} elements in ascending order.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongTreapIterator();
+    }
+
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return new LongTreapSpliterator(0, size(), null);
+    }
+
+    public LongStream stream() {
+        return StreamSupport.longStream(this::spliterator, LongTreapSpliterator.CHARACTERISTICS, false);
+    }
+
+    public LongStream parallelStream() {
+        return StreamSupport.longStream(this::spliterator, LongTreapSpliterator.CHARACTERISTICS, true);
+    }
+
+    /**
+     * Copy the elements into a new array, in ascending order.
+     *
+     * @return the elements in ascending order
+     */
+    public long[] toArray() {
+        final long[] array = new long[size()];
+        final PrimitiveIterator.OfLong iterator = iterator();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = iterator.nextLong();
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * A node of a {@link LongTreap}, holding its key unboxed.
+     */
+    static final class Node extends PrimitiveTreap.Node<Node> {
+        private final long key;
+
+        Node(long key, int priority) {
+            super(priority);
+            this.key = key;
+        }
+
+        @Override
+        int compareKey(Node other) {
+            return Long.compare(key, other.key);
+        }
+    }
+
+    private class LongTreapIterator extends NodeIterator implements PrimitiveIterator.OfLong {
+        @Override
+        public long nextLong() {
+            return nextNode().key;
+        }
+    }
+
+    /**
+     * {@link Spliterator.OfLong} for in-order traversal of the elements at positions
+     * {@code [index, end)}, splitting by halving the position range.
+     */
+    private class LongTreapSpliterator extends NodeSpliterator implements Spliterator.OfLong {
+        private static final int CHARACTERISTICS =
+                DISTINCT | NONNULL | ORDERED | SORTED | SIZED | SUBSIZED;
+
+        private LongTreapSpliterator(int index, int end, Deque<Node> stack) {
+            super(index, end, stack);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action);
+            final Node next = nextNode();
+            if (next == null) {
+                return false;
+            }
+            action.accept(next.key);
+            return true;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            final int mid = midpoint();
+            if (mid <= index) {
+                return null;
+            }
+
+            // The prefix starts where this one currently is, so it can take over the cursor as-is.
+            final Spliterator.OfLong prefix = new LongTreapSpliterator(index, mid, stack);
+            skipTo(mid);
+            return prefix;
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            // Natural ordering.
+            return null;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+}
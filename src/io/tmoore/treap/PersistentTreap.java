@@ -0,0 +1,504 @@
+package io.tmoore.treap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable treap. {@link #add} and {@link #remove} leave the receiver untouched and return a new
+ * version, which copies only the nodes on the path to the change and shares every other subtree with
+ * the version it came from. Holding on to a version is therefore an O(1) snapshot: it never changes,
+ * and can be read from any number of threads without synchronization while newer versions are made.
+ */
+public final class PersistentTreap<T extends Comparable<T>> implements Iterable<T> {
+    private final Node<T> root;
+    private final PriorityGenerator priorities;
+
+    // CONSTRUCTORS
+
+    private PersistentTreap(Node<T> root, PriorityGenerator priorities) {
+        this.root = root;
+        this.priorities = priorities;
+    }
+
+    /**
+     * @return an empty {@link PersistentTreap}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static <T extends Comparable<T>> PersistentTreap<T> empty() {
+        return empty(PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * @param priorities the source of node priorities for this and all derived versions
+     * @return an empty {@link PersistentTreap}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static <T extends Comparable<T>> PersistentTreap<T> empty(PriorityGenerator priorities) {
+        return new PersistentTreap<>(null, Objects.requireNonNull(priorities));
+    }
+
+    /**
+     * Create a {@link PersistentTreap} holding the distinct elements of the given collection, built in
+     * linear time once they are in ascending order.
+     *
+     * @param fromCollection the elements
+     * @return a new {@link PersistentTreap}
+     * @see Treap#Treap(Collection)
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static <T extends Comparable<T>> PersistentTreap<T> copyOf(Collection<? extends T> fromCollection) {
+        return copyOf(fromCollection, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * @param fromCollection the elements
+     * @param priorities     the source of node priorities for this and all derived versions
+     * @return a new {@link PersistentTreap}
+     * @see #copyOf(Collection)
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static <T extends Comparable<T>> PersistentTreap<T> copyOf(Collection<? extends T> fromCollection,
+                                                                      PriorityGenerator priorities) {
+        return new PersistentTreap<>(build(Treap.sortedDistinct(fromCollection), priorities),
+                                     Objects.requireNonNull(priorities));
+    }
+
+    // QUERIES
+
+    public int size() {
+        return Node.size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public boolean contains(T item) {
+        Objects.requireNonNull(item);
+        Node<T> current = root;
+        while (current != null) {
+            final int comparison = item.compareTo(current.value);
+            if (comparison == 0) {
+                return true;
+            }
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the given object is not null and there are elements to compare it with. As in
+     * {@link Treap}, it is then compared as it is, so instances of subclasses are found, and objects which
+     * cannot be compared throw {@link ClassCastException}.
+     */
+    boolean accepts(Object o) {
+        return o != null && root != null;
+    }
+
+    /**
+     * @return the least element
+     * @throws NoSuchElementException if this {@link PersistentTreap} is empty
+     */
+    public T first() {
+        if (root == null) {
+            throw new NoSuchElementException("The PersistentTreap is empty.");
+        }
+        Node<T> current = root;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.value;
+    }
+
+    /**
+     * @return the greatest element
+     * @throws NoSuchElementException if this {@link PersistentTreap} is empty
+     */
+    public T last() {
+        if (root == null) {
+            throw new NoSuchElementException("The PersistentTreap is empty.");
+        }
+        Node<T> current = root;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.value;
+    }
+
+    /**
+     * Get the element at the given position in natural ascending order.
+     *
+     * @param index zero-based position of the element
+     * @return the element at that position
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<T> current = root;
+        while (true) {
+            final int leftSize = Node.size(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            }
+            else if (index == leftSize) {
+                return current.value;
+            }
+            else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    /**
+     * Get the number of elements strictly less than the given item, which is the item's position in
+     * ascending order if it is present.
+     *
+     * @param item the item to rank
+     * @return the number of elements less than {@code item}
+     */
+    public int countLessThan(T item) {
+        Objects.requireNonNull(item);
+        int count = 0;
+        Node<T> current = root;
+        while (current != null) {
+            if (item.compareTo(current.value) <= 0) {
+                current = current.left;
+            }
+            else {
+                count += Node.size(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return count;
+    }
+
+    // VERSIONS
+
+    /**
+     * Get a version of this {@link PersistentTreap} which also holds the given item. Only the nodes on
+     * the insertion path are copied; this version is unchanged.
+     *
+     * @param item the item to add
+     * @return the new version, or this one if the item was already present
+     */
+    public PersistentTreap<T> add(T item) {
+        Objects.requireNonNull(item);
+        final List<Node<T>> path = new ArrayList<>();
+        Node<T> current = root;
+        while (current != null) {
+            final int comparison = item.compareTo(current.value);
+            if (comparison == 0) {
+                return this;
+            }
+            path.add(current);
+            current = comparison < 0 ? current.left : current.right;
+        }
+
+        // Rebuild the path bottom-up. While the new node outranks the ancestor being copied, the copy
+        // is a rotation which lifts it above that ancestor.
+        Node<T> child = new Node<>(item, priorities.nextPriority(), null, null);
+        boolean rising = true;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            final Node<T> parent = path.get(i);
+            final boolean wentLeft = item.compareTo(parent.value) < 0;
+            rising = rising && child.priority > parent.priority;
+            if (wentLeft) {
+                child = rising
+                        ? new Node<>(child.value, child.priority, child.left,
+                                     new Node<>(parent.value, parent.priority, child.right, parent.right))
+                        : new Node<>(parent.value, parent.priority, child, parent.right);
+            }
+            else {
+                child = rising
+                        ? new Node<>(child.value, child.priority,
+                                     new Node<>(parent.value, parent.priority, parent.left, child.left),
+                                     child.right)
+                        : new Node<>(parent.value, parent.priority, parent.left, child);
+            }
+        }
+        return new PersistentTreap<>(child, priorities);
+    }
+
+    /**
+     * Get a version of this {@link PersistentTreap} without the given item. The removed node's children
+     * are merged in its place; only the nodes on the path to it and along the merge are copied, and this
+     * version is unchanged.
+     *
+     * @param item the item to remove
+     * @return the new version, or this one if the item was not present
+     */
+    public PersistentTreap<T> remove(T item) {
+        Objects.requireNonNull(item);
+        final List<Node<T>> path = new ArrayList<>();
+        Node<T> current = root;
+        while (true) {
+            if (current == null) {
+                return this;
+            }
+            final int comparison = item.compareTo(current.value);
+            if (comparison == 0) {
+                break;
+            }
+            path.add(current);
+            current = comparison < 0 ? current.left : current.right;
+        }
+
+        Node<T> child = merge(current.left, current.right);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            final Node<T> parent = path.get(i);
+            child = item.compareTo(parent.value) < 0
+                    ? new Node<>(parent.value, parent.priority, child, parent.right)
+                    : new Node<>(parent.value, parent.priority, parent.left, child);
+        }
+        return new PersistentTreap<>(child, priorities);
+    }
+
+    /**
+     * Get an empty version which draws its priorities from the same generator as this one.
+     *
+     * @return an empty {@link PersistentTreap}
+     */
+    public PersistentTreap<T> clear() {
+        return root == null ? this : new PersistentTreap<>(null, priorities);
+    }
+
+    /**
+     * Merge two treaps, where every key in {@code a} is less than every key in {@code b}, copying the
+     * nodes along the merge spine.
+     *
+     * @see TreapNode#merge(TreapNode, TreapNode)
+     */
+    private static <T extends Comparable<T>> Node<T> merge(Node<T> a, Node<T> b) {
+        // Record the winners top-down, then rebuild them bottom-up around whatever is left over. A winner
+        // from the left treap gives up its right subtree to the merge, and vice versa.
+        final List<Node<T>> spine = new ArrayList<>();
+        final BitSet fromLeft = new BitSet();
+        while (a != null && b != null) {
+            if (a.priority > b.priority) {
+                fromLeft.set(spine.size());
+                spine.add(a);
+                a = a.right;
+            }
+            else {
+                spine.add(b);
+                b = b.left;
+            }
+        }
+
+        Node<T> merged = a == null ? b : a;
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            final Node<T> chosen = spine.get(i);
+            merged = fromLeft.get(i)
+                     ? new Node<>(chosen.value, chosen.priority, chosen.left, merged)
+                     : new Node<>(chosen.value, chosen.priority, merged, chosen.right);
+        }
+        return merged;
+    }
+
+    // ITERATION
+
+    /**
+     * Traverses elements in natural ascending order. The iterator reads this version only, so it is
+     * unaffected by versions derived after it was created.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final List<Node<T>> stack = new ArrayList<>();
+
+            {
+                pushLeftSpine(root);
+            }
+
+            private void pushLeftSpine(Node<T> node) {
+                for (Node<T> n = node; n != null; n = n.left) {
+                    stack.add(n);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException("The Iterator is empty.");
+                }
+                final Node<T> next = stack.remove(stack.size() - 1);
+                pushLeftSpine(next.right);
+                return next.value;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+                                        Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL |
+                                        Spliterator.ORDERED | Spliterator.SORTED);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return the elements of this version in natural ascending order
+     */
+    public List<T> asList() {
+        final List<T> list = new ArrayList<>(size());
+        forEach(list::add);
+        return list;
+    }
+
+    // OBJECT METHODS
+
+    /**
+     * Two {@link PersistentTreap}s are equal if they hold the same elements, whatever their shapes.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof PersistentTreap)) {
+            return false;
+        }
+
+        final PersistentTreap<?> other = (PersistentTreap<?>) o;
+        if (other.size() != size()) {
+            return false;
+        }
+        final Iterator<?> theirs = other.iterator();
+        for (T item : this) {
+            if (!item.equals(theirs.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the sum of the elements' hash codes, as for a {@link java.util.Set}
+     */
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (T item : this) {
+            hash += item.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+
+    // TREE CONSTRUCTION
+
+    /**
+     * Build a tree from values in strictly ascending order, in linear time. The Cartesian tree is laid
+     * out over indices first, and then the immutable nodes are created children-first.
+     *
+     * @see TreapNode#build(Iterable, PriorityGenerator)
+     */
+    private static <T extends Comparable<T>> Node<T> build(List<T> sorted, PriorityGenerator priorities) {
+        final int n = sorted.size();
+        if (n == 0) {
+            return null;
+        }
+
+        final int[] priority = new int[n];
+        final int[] left = new int[n];
+        final int[] right = new int[n];
+        Arrays.fill(left, -1);
+        Arrays.fill(right, -1);
+
+        // The right spine of the tree so far, deepest on top.
+        final int[] spine = new int[n];
+        int top = 0;
+        for (int i = 0; i < n; i++) {
+            priority[i] = priorities.nextPriority();
+            int popped = -1;
+            while (top > 0 && priority[spine[top - 1]] < priority[i]) {
+                popped = spine[--top];
+            }
+            left[i] = popped;
+            if (top > 0) {
+                right[spine[top - 1]] = i;
+            }
+            spine[top++] = i;
+        }
+
+        // Reverse of a root-first, right-before-left traversal visits every child before its parent.
+        final int[] order = new int[n];
+        int visited = n;
+        final int[] pending = spine;
+        top = 0;
+        pending[top++] = spine[0];
+        while (top > 0) {
+            final int i = pending[--top];
+            order[--visited] = i;
+            if (left[i] >= 0) {
+                pending[top++] = left[i];
+            }
+            if (right[i] >= 0) {
+                pending[top++] = right[i];
+            }
+        }
+
+        final Node<T>[] nodes = Node.newArray(n);
+        for (int i : order) {
+            nodes[i] = new Node<>(sorted.get(i), priority[i],
+                                  left[i] < 0 ? null : nodes[left[i]],
+                                  right[i] < 0 ? null : nodes[right[i]]);
+        }
+        return nodes[order[n - 1]];
+    }
+
+    /**
+     * An immutable treap node. Its size is fixed at construction, since its children never change.
+     */
+    private static final class Node<T> {
+        private final T value;
+        private final int priority;
+        private final int size;
+        private final Node<T> left;
+        private final Node<T> right;
+
+        private Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        private static int size(Node<?> node) {
+            return node == null ? 0 : node.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int length) {
+            return (Node<T>[]) new Node<?>[length];
+        }
+    }
+}
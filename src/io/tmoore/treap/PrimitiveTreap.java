@@ -0,0 +1,535 @@
+package io.tmoore.treap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * The tree structure shared by {@link IntTreap} and {@link LongTreap}: subtree sizes, rotations, merging,
+ * positional lookup, splitting, joining and in-order traversal. None of it looks at keys except through
+ * {@link Node#compareKey}, so each subclass only implements the searches by key, where its comparisons
+ * stay direct and unboxed.
+ *
+ * @param <N> the node type, which holds the key
+ */
+abstract class PrimitiveTreap<N extends PrimitiveTreap.Node<N>> {
+
+    N root = null;
+
+    final PriorityGenerator priorities;
+
+    /**
+     * Scratch stack for the search path of {@code add} and {@code remove}, reused between calls.
+     */
+    final Deque<N> path = new ArrayDeque<>();
+
+    PrimitiveTreap(PriorityGenerator priorities) {
+        this.priorities = Objects.requireNonNull(priorities);
+    }
+
+    // CORE OPERATIONS
+
+    public int size() {
+        return Node.size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Finish adding a node which has just been attached as a leaf below the top of {@link #path}. Walk back
+     * up, growing each ancestor and lifting the new node while it outranks its parent.
+     *
+     * @param node the new leaf
+     */
+    void lift(N node) {
+        boolean rising = true;
+        while (!path.isEmpty()) {
+            final N parent = path.pop();
+            parent.size++;
+            if (rising && node.priority > parent.priority) {
+                final N lifted = parent.left == node ? parent.rotateRight() : parent.rotateLeft();
+                final N grandparent = path.peek();
+                if (grandparent == null) {
+                    root = lifted;
+                }
+                else if (grandparent.left == parent) {
+                    grandparent.left = lifted;
+                }
+                else {
+                    grandparent.right = lifted;
+                }
+            }
+            else {
+                rising = false;
+            }
+        }
+    }
+
+    /**
+     * Remove a node whose ancestors are on {@link #path}, parent on top, by merging its children in its
+     * place, and shrink each ancestor. The path is left empty.
+     *
+     * @param node the node to remove
+     */
+    void unlink(N node) {
+        final N replacement = merge(node.left, node.right);
+        final N parent = path.peek();
+        if (parent == null) {
+            root = replacement;
+        }
+        else if (parent.left == node) {
+            parent.left = replacement;
+        }
+        else {
+            parent.right = replacement;
+        }
+
+        while (!path.isEmpty()) {
+            path.pop().size--;
+        }
+    }
+
+    /**
+     * Remove a node known to be in the tree, finding its ancestors by comparing keys with it.
+     *
+     * @param node the node to remove
+     */
+    void removeNode(N node) {
+        N current = root;
+        while (current != node) {
+            path.push(current);
+            current = node.compareKey(current) < 0 ? current.left : current.right;
+        }
+        unlink(node);
+    }
+
+    // ORDER STATISTICS
+
+    /**
+     * @return the node holding the least element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    N firstNode() {
+        if (root == null) {
+            throw new NoSuchElementException("The " + getClass().getSimpleName() + " is empty.");
+        }
+        N current = root;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current;
+    }
+
+    /**
+     * @return the node holding the greatest element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    N lastNode() {
+        if (root == null) {
+            throw new NoSuchElementException("The " + getClass().getSimpleName() + " is empty.");
+        }
+        N current = root;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current;
+    }
+
+    /**
+     * @param index zero-based position of the element
+     * @return the node holding the element at that position in ascending order
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}
+     */
+    N nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        N current = root;
+        while (true) {
+            final int leftSize = Node.size(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            }
+            else if (index == leftSize) {
+                return current;
+            }
+            else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    // SPLIT AND JOIN
+
+    /**
+     * Split this tree in two, keeping the nodes below a key and returning those at or above it.
+     *
+     * @param atOrAbove whether a node is at or above the key
+     * @return the root of the nodes at or above the key
+     * @see TreapNode#split(TreapNode, Object, java.util.Comparator)
+     */
+    N splitOff(Predicate<N> atOrAbove) {
+        // Nodes whose children change, deepest on top, so their sizes can be fixed bottom-up.
+        final Deque<N> touched = new ArrayDeque<>();
+        N less = null;
+        N greater = null;
+        N lessTail = null;
+        N greaterTail = null;
+
+        N current = root;
+        while (current != null) {
+            touched.push(current);
+            if (atOrAbove.test(current)) {
+                // current and its right subtree are at or above the key; keep splitting its left subtree.
+                if (greaterTail == null) {
+                    greater = current;
+                }
+                else {
+                    greaterTail.left = current;
+                }
+                greaterTail = current;
+                current = current.left;
+            }
+            else {
+                // current and its left subtree are below the key; keep splitting its right subtree.
+                if (lessTail == null) {
+                    less = current;
+                }
+                else {
+                    lessTail.right = current;
+                }
+                lessTail = current;
+                current = current.right;
+            }
+        }
+        if (lessTail != null) {
+            lessTail.right = null;
+        }
+        if (greaterTail != null) {
+            greaterTail.left = null;
+        }
+
+        while (!touched.isEmpty()) {
+            touched.pop().updateSize();
+        }
+        root = less;
+        return greater;
+    }
+
+    /**
+     * Move every node of the given tree into this one, leaving {@code other} empty.
+     *
+     * @param other the tree to absorb
+     * @throws IllegalArgumentException if the key ranges of the two trees overlap
+     */
+    void absorb(PrimitiveTreap<N> other) {
+        Objects.requireNonNull(other);
+        if (other.root == null) {
+            return;
+        }
+
+        if (root == null) {
+            root = other.root;
+        }
+        else if (lastNode().compareKey(other.firstNode()) < 0) {
+            root = merge(root, other.root);
+        }
+        else if (other.lastNode().compareKey(firstNode()) < 0) {
+            root = merge(other.root, root);
+        }
+        else {
+            throw new IllegalArgumentException("Cannot join treaps with overlapping key ranges");
+        }
+        other.root = null;
+    }
+
+    // TREE OPERATIONS
+
+    /**
+     * Merge two treaps, where every key in {@code left} is less than every key in {@code right}.
+     *
+     * @see TreapNode#merge(TreapNode, TreapNode)
+     */
+    static <N extends Node<N>> N merge(N left, N right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        // Whichever root wins at each step ends up holding everything still left to merge, so sizes can
+        // be fixed on the way down.
+        N root = null;
+        N parent = null;
+        boolean attachRight = false;
+        while (left != null && right != null) {
+            final N chosen;
+            final int mergedSize = left.size + right.size;
+            final boolean fromLeft = left.priority > right.priority;
+            if (fromLeft) {
+                chosen = left;
+                left = left.right;
+            }
+            else {
+                chosen = right;
+                right = right.left;
+            }
+            chosen.size = mergedSize;
+
+            if (parent == null) {
+                root = chosen;
+            }
+            else if (attachRight) {
+                parent.right = chosen;
+            }
+            else {
+                parent.left = chosen;
+            }
+            parent = chosen;
+            attachRight = fromLeft;
+        }
+
+        final N rest = left == null ? right : left;
+        if (attachRight) {
+            parent.right = rest;
+        }
+        else {
+            parent.left = rest;
+        }
+        return root;
+    }
+
+    /**
+     * Build a treap from nodes created in strictly ascending key order, in linear time.
+     *
+     * @param count   the number of nodes
+     * @param factory creates the node at each position, with a fresh priority
+     * @see TreapNode#build(Iterable, PriorityGenerator)
+     */
+    static <N extends Node<N>> N build(int count, IntFunction<N> factory) {
+        final Deque<N> spine = new ArrayDeque<>();
+
+        for (int i = 0; i < count; i++) {
+            final N node = factory.apply(i);
+            N popped = null;
+            while (!spine.isEmpty() && spine.peek().priority < node.priority) {
+                popped = spine.pop();
+                popped.updateSize();
+            }
+            node.left = popped;
+            if (!spine.isEmpty()) {
+                spine.peek().right = node;
+            }
+            spine.push(node);
+        }
+
+        N root = null;
+        while (!spine.isEmpty()) {
+            root = spine.pop();
+            root.updateSize();
+        }
+        return root;
+    }
+
+    /**
+     * A node of a {@link PrimitiveTreap}. Subclasses add the key.
+     *
+     * @param <N> the node type itself
+     */
+    abstract static class Node<N extends Node<N>> {
+        final int priority;
+        int size = 1;
+        N left;
+        N right;
+
+        Node(int priority) {
+            this.priority = priority;
+        }
+
+        static int size(Node<?> node) {
+            return node == null ? 0 : node.size;
+        }
+
+        void updateSize() {
+            size = 1 + size(left) + size(right);
+        }
+
+        /**
+         * @return a negative number, zero or a positive number as this node's key is less than, equal to
+         * or greater than that of the given node
+         */
+        abstract int compareKey(N other);
+
+        @SuppressWarnings("unchecked")
+        private N self() {
+            return (N) this;
+        }
+
+        /**
+         * @return the new local root node
+         */
+        N rotateRight() {
+            final N l = left;
+            left = l.right;
+            l.right = self();
+            updateSize();
+            l.updateSize();
+            return l;
+        }
+
+        /**
+         * @return the new local root node
+         */
+        N rotateLeft() {
+            final N r = right;
+            right = r.left;
+            r.left = self();
+            updateSize();
+            r.updateSize();
+            return r;
+        }
+    }
+
+    /**
+     * An in-order iterator which keeps only the pending left spine on its stack. Subclasses return the
+     * key of each node.
+     */
+    abstract class NodeIterator {
+        private final Deque<N> stack = new ArrayDeque<>();
+        private N lastReturned = null;
+
+        NodeIterator() {
+            for (N n = root; n != null; n = n.left) {
+                stack.push(n);
+            }
+        }
+
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        N nextNode() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException("The Iterator is empty.");
+            }
+
+            final N next = stack.pop();
+            for (N n = next.right; n != null; n = n.left) {
+                stack.push(n);
+            }
+            lastReturned = next;
+            return next;
+        }
+
+        /**
+         * Removal merges the node's children in its place, which never relinks the right subtrees of the
+         * nodes still pending on the stack, so iteration can continue.
+         */
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("remove called twice or before next was ever called");
+            }
+
+            removeNode(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Cursor over the nodes at positions {@code [index, end)}, for a spliterator which splits by halving
+     * the position range.
+     *
+     * @see Treap#spliterator()
+     */
+    abstract class NodeSpliterator {
+        int index;
+        final int end;
+
+        /**
+         * In-order cursor: the node at {@link #index} on top, then each ancestor whose left subtree holds
+         * the cursor. Built lazily, since a spliterator which is only split never needs one.
+         */
+        Deque<N> stack;
+
+        NodeSpliterator(int index, int end, Deque<N> stack) {
+            this.index = index;
+            this.end = end;
+            this.stack = stack;
+        }
+
+        private void seek() {
+            stack = new ArrayDeque<>();
+            N current = root;
+            int remaining = index;
+            while (current != null) {
+                final int leftSize = Node.size(current.left);
+                if (remaining < leftSize) {
+                    stack.push(current);
+                    current = current.left;
+                }
+                else if (remaining == leftSize) {
+                    stack.push(current);
+                    return;
+                }
+                else {
+                    remaining -= leftSize + 1;
+                    current = current.right;
+                }
+            }
+        }
+
+        /**
+         * @return the next node, or {@code null} if there are no more
+         */
+        N nextNode() {
+            if (index >= end) {
+                return null;
+            }
+            if (stack == null) {
+                seek();
+            }
+
+            final N next = stack.pop();
+            for (N n = next.right; n != null; n = n.left) {
+                stack.push(n);
+            }
+            index++;
+            return next;
+        }
+
+        /**
+         * @return the position at which to split off a prefix, or {@link #index} if it is too small
+         */
+        int midpoint() {
+            return Math.max(index, (index + end) >>> 1);
+        }
+
+        /**
+         * Hand the positions before {@code mid}, and the cursor, over to a prefix which has just been
+         * created from {@link #index}, {@code mid} and {@link #stack}.
+         */
+        void skipTo(int mid) {
+            index = mid;
+            stack = null;
+        }
+
+        public long estimateSize() {
+            return end - index;
+        }
+
+        public long getExactSizeIfKnown() {
+            return estimateSize();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.tmoore.treap;
+
+import java.util.SplittableRandom;
+
+/**
+ * Source of the random heap priorities given to new {@link Treap} nodes. The expected shape of a
+ * {@link Treap} depends on these being independent and uniformly distributed.
+ */
+@FunctionalInterface
+public interface PriorityGenerator {
+    /**
+     * The least priority a generator should produce.
+     */
+    int MIN_PRIORITY = 1;
+
+    /**
+     * The greatest priority a generator should produce.
+     */
+    int MAX_PRIORITY = Integer.MAX_VALUE - 2;
+
+    /**
+     * Produce the priority for a new node.
+     *
+     * @return a priority in {@code [MIN_PRIORITY, MAX_PRIORITY]}
+     */
+    int nextPriority();
+
+    /**
+     * The default generator, which draws from the calling thread's
+     * {@link java.util.concurrent.ThreadLocalRandom}. It is safe to share between {@link Treap}s built
+     * concurrently on different threads, and never contends.
+     *
+     * @return the shared thread-local generator
+     */
+    static PriorityGenerator threadLocal() {
+        return ThreadLocalPriorityGenerator.INSTANCE;
+    }
+
+    /**
+     * A deterministic generator which produces the same sequence of priorities for the same seed, so
+     * that the same operations produce the same tree shape from run to run. The generator is not
+     * thread-safe, and should not be shared between {@link Treap}s used on different threads.
+     *
+     * @param seed the initial seed
+     * @return a new seeded generator
+     */
+    static PriorityGenerator seeded(long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        return () -> random.nextInt(MIN_PRIORITY, MAX_PRIORITY + 1);
+    }
+}
@@ -0,0 +1,523 @@
+package io.tmoore.treap;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe sorted set which partitions its key space into contiguous ranges, each held by its own
+ * {@link Treap} behind its own lock, so that writers to different ranges proceed in parallel.
+ *
+ * <p>The partition adapts as keys arrive. A shard which grows past the maximum shard size is split at
+ * its median with {@link Treap#split}, and a shard which shrinks below a quarter of it is merged with a
+ * neighbour with {@link Treap#join}; both relink nodes rather than copy them. A skewed key distribution
+ * therefore ends up spread over many small shards where the writes land, and few large ones elsewhere.
+ *
+ * <p>Operations on a single element lock one shard. {@link #size()} and iteration visit the shards in
+ * order, locking one at a time, so under concurrent writes they are weakly consistent: each shard is
+ * seen at some point during the call, but not necessarily all at the same point. Iterators copy one
+ * shard at a time, and never throw {@link java.util.ConcurrentModificationException}.
+ */
+public class ShardedTreap<T extends Comparable<T>> extends AbstractSet<T> {
+    private static final int DEFAULT_MAX_SHARD_SIZE = 1 << 16;
+
+    private final int maxShardSize;
+
+    /**
+     * The shards in ascending key order. The array is never modified once published; restructuring
+     * publishes a new one.
+     */
+    private volatile Shard<T>[] shards;
+
+    /**
+     * Serializes restructuring, so that only one split or merge is working out a new shard table at a
+     * time.
+     */
+    private final ReentrantLock restructure = new ReentrantLock();
+
+    // CONSTRUCTORS
+
+    @SuppressWarnings("WeakerAccess")
+    public ShardedTreap() {
+        this(DEFAULT_MAX_SHARD_SIZE);
+    }
+
+    /**
+     * @param maxShardSize the size above which a shard is split in two
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ShardedTreap(int maxShardSize) {
+        if (maxShardSize < 4) {
+            throw new IllegalArgumentException("Maximum shard size must be at least 4: " + maxShardSize);
+        }
+        this.maxShardSize = maxShardSize;
+        this.shards = initialTable();
+    }
+
+    /**
+     * @return the current number of shards
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    // CORE COLLECTION METHODS
+
+    /**
+     * Sums the sizes of the shards, starting again with a newer table if one of them has been retired,
+     * so that no element is counted twice; see the class documentation for its consistency under
+     * concurrent writes.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        retry:
+        while (true) {
+            int size = 0;
+            for (Shard<T> shard : shards) {
+                shard.lock.readLock().lock();
+                try {
+                    if (shard.retired) {
+                        continue retry;
+                    }
+                    size += shard.treap.size();
+                }
+                finally {
+                    shard.lock.readLock().unlock();
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the object cannot be compared with the elements of this
+     *                            {@link ShardedTreap}
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        while (true) {
+            final Shard<T> shard = shardFor(o);
+            shard.lock.readLock().lock();
+            try {
+                if (!shard.retired) {
+                    return shard.treap.contains(o);
+                }
+            }
+            finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean add(T item) {
+        Objects.requireNonNull(item);
+        while (true) {
+            final Shard<T> shard = shardFor(item);
+            final boolean added;
+            final int size;
+            shard.lock.writeLock().lock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                added = shard.treap.add(item);
+                size = shard.treap.size();
+            }
+            finally {
+                shard.lock.writeLock().unlock();
+            }
+
+            if (size > maxShardSize) {
+                trySplit(shard);
+            }
+            return added;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the object cannot be compared with the elements of this
+     *                            {@link ShardedTreap}
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        while (true) {
+            final Shard<T> shard = shardFor(o);
+            final boolean removed;
+            final int size;
+            shard.lock.writeLock().lock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                removed = shard.treap.remove(o);
+                size = shard.treap.size();
+            }
+            finally {
+                shard.lock.writeLock().unlock();
+            }
+
+            if (removed && size < maxShardSize / 4) {
+                tryMerge(shard);
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * @return the least element
+     * @throws NoSuchElementException if this {@link ShardedTreap} is empty
+     */
+    public T first() {
+        return endpoint(true);
+    }
+
+    /**
+     * @return the greatest element
+     * @throws NoSuchElementException if this {@link ShardedTreap} is empty
+     */
+    public T last() {
+        return endpoint(false);
+    }
+
+    /**
+     * Get the least or greatest element from the first non-empty shard at that end of the current
+     * table, starting again with a newer table if that shard has been retired.
+     */
+    private T endpoint(boolean least) {
+        retry:
+        while (true) {
+            final Shard<T>[] table = shards;
+            for (int i = 0; i < table.length; i++) {
+                final Shard<T> shard = table[least ? i : table.length - 1 - i];
+                shard.lock.readLock().lock();
+                try {
+                    if (shard.retired) {
+                        continue retry;
+                    }
+                    if (!shard.treap.isEmpty()) {
+                        return least ? shard.treap.first() : shard.treap.last();
+                    }
+                }
+                finally {
+                    shard.lock.readLock().unlock();
+                }
+            }
+            throw new NoSuchElementException("The ShardedTreap is empty.");
+        }
+    }
+
+    /**
+     * Traverses elements in natural ascending order, copying one shard at a time; see the class
+     * documentation for its consistency under concurrent writes.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ShardedIterator();
+    }
+
+    @Override
+    public void clear() {
+        restructure.lock();
+        try {
+            final Shard<T>[] table = shards;
+            for (Shard<T> shard : table) {
+                shard.lock.writeLock().lock();
+            }
+            try {
+                for (Shard<T> shard : table) {
+                    shard.retired = true;
+                }
+                shards = initialTable();
+            }
+            finally {
+                for (Shard<T> shard : table) {
+                    shard.lock.writeLock().unlock();
+                }
+            }
+        }
+        finally {
+            restructure.unlock();
+        }
+    }
+
+    // SHARD MANAGEMENT
+
+    /**
+     * Find the shard whose key range holds the given item in the current table: the last one whose
+     * lower bound is at or below it. As in {@link Treap}, the object is compared with the bounds as it
+     * is, so instances of subclasses find their shard.
+     *
+     * @throws ClassCastException if the object cannot be compared with the shard bounds
+     */
+    @SuppressWarnings("unchecked")
+    private Shard<T> shardFor(Object o) {
+        final Shard<T>[] table = shards;
+        final T item = (T) o;
+        int low = 1;
+        int high = table.length - 1;
+        int found = 0;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (table[mid].lowerBound.compareTo(item) <= 0) {
+                found = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return table[found];
+    }
+
+    /**
+     * Split the given shard at its median, if no other restructuring is under way and it is still too
+     * large. Writers blocked on the old shard find it retired and retry against the new table.
+     */
+    private void trySplit(Shard<T> shard) {
+        if (!restructure.tryLock()) {
+            return;
+        }
+        try {
+            shard.lock.writeLock().lock();
+            try {
+                final int size = shard.treap.size();
+                if (shard.retired || size <= maxShardSize) {
+                    return;
+                }
+
+                final T median = shard.treap.get(size / 2);
+                final Treap<T> upper = shard.treap.split(median);
+                final Shard<T>[] table = shards;
+                final int index = indexOf(table, shard);
+                final Shard<T>[] next = Arrays.copyOf(table, table.length + 1);
+                next[index] = new Shard<>(shard.lowerBound, shard.treap);
+                next[index + 1] = new Shard<>(median, upper);
+                System.arraycopy(table, index + 1, next, index + 2, table.length - index - 1);
+                shard.retired = true;
+                shards = next;
+            }
+            finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+        finally {
+            restructure.unlock();
+        }
+    }
+
+    /**
+     * Merge the given shard into a neighbour, if no other restructuring is under way and the two together
+     * are still small.
+     */
+    private void tryMerge(Shard<T> shard) {
+        if (!restructure.tryLock()) {
+            return;
+        }
+        try {
+            final Shard<T>[] table = shards;
+            final int index = indexOf(table, shard);
+            if (index < 0 || table.length == 1) {
+                return;
+            }
+            final int lowerIndex = index + 1 < table.length ? index : index - 1;
+            final Shard<T> lower = table[lowerIndex];
+            final Shard<T> upper = table[lowerIndex + 1];
+
+            // Writers only ever hold one shard lock, so taking two in key order cannot deadlock.
+            lower.lock.writeLock().lock();
+            try {
+                upper.lock.writeLock().lock();
+                try {
+                    if (lower.treap.size() + upper.treap.size() > maxShardSize / 2) {
+                        return;
+                    }
+
+                    lower.treap.join(upper.treap);
+                    final Shard<T>[] next = newTable(table.length - 1);
+                    System.arraycopy(table, 0, next, 0, lowerIndex);
+                    next[lowerIndex] = new Shard<>(lower.lowerBound, lower.treap);
+                    System.arraycopy(table, lowerIndex + 2, next, lowerIndex + 1, table.length - lowerIndex - 2);
+                    lower.retired = true;
+                    upper.retired = true;
+                    shards = next;
+                }
+                finally {
+                    upper.lock.writeLock().unlock();
+                }
+            }
+            finally {
+                lower.lock.writeLock().unlock();
+            }
+        }
+        finally {
+            restructure.unlock();
+        }
+    }
+
+    /**
+     * @return a table holding one empty shard which covers every key
+     */
+    private static <T extends Comparable<T>> Shard<T>[] initialTable() {
+        final Shard<T>[] table = newTable(1);
+        table[0] = new Shard<T>(null, new Treap<>());
+        return table;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> Shard<T>[] newTable(int length) {
+        return (Shard<T>[]) new Shard<?>[length];
+    }
+
+    private static int indexOf(Shard<?>[] table, Shard<?> shard) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] == shard) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * One key range: every element at or above {@link #lowerBound} and below the next shard's. Once
+     * retired by a split or merge, its {@link Treap} belongs to its replacement, and operations which
+     * reach it through a stale table must look again.
+     */
+    private static final class Shard<T extends Comparable<T>> {
+        /**
+         * The least key this shard may hold, or {@code null} for the first shard.
+         */
+        private final T lowerBound;
+        private final Treap<T> treap;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * Guarded by {@link #lock}.
+         */
+        private boolean retired = false;
+
+        private Shard(T lowerBound, Treap<T> treap) {
+            this.lowerBound = lowerBound;
+            this.treap = treap;
+        }
+
+        /**
+         * @return a copy of this shard's elements in ascending order, or {@code null} if it has been
+         * retired
+         */
+        private List<T> contents() {
+            lock.readLock().lock();
+            try {
+                return retired ? null : treap.asList();
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Walks the shard table captured at creation, copying each shard's elements as it is reached. If a
+     * shard has been retired by then, its replacements in the current table are copied instead.
+     */
+    private class ShardedIterator implements Iterator<T> {
+        private final Shard<T>[] table = shards;
+        private int nextShard = 0;
+        private Iterator<T> current = Collections.emptyIterator();
+        private T lastReturned = null;
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && nextShard < table.length) {
+                final Shard<T> shard = table[nextShard++];
+                List<T> contents = shard.contents();
+                if (contents == null) {
+                    // Re-read the range this shard covered from whatever now holds it.
+                    final T upperBound = nextShard < table.length ? table[nextShard].lowerBound : null;
+                    contents = rangeOf(shard.lowerBound, upperBound);
+                }
+                current = contents.iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("The Iterator is empty.");
+            }
+            lastReturned = current.next();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("remove called twice or before next was ever called");
+            }
+            ShardedTreap.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Copy the elements in {@code [lowerBound, upperBound)} from the shards of the current table which
+     * overlap it, starting again with a newer table if one of them is retired part-way through.
+     *
+     * @param lowerBound the least element to copy, or {@code null} for no lower bound
+     * @param upperBound the element to stop before, or {@code null} for no upper bound
+     * @return the elements in ascending order
+     */
+    private List<T> rangeOf(T lowerBound, T upperBound) {
+        retry:
+        while (true) {
+            final Shard<T>[] table = shards;
+            final List<T> range = new ArrayList<>();
+            for (int i = 0; i < table.length; i++) {
+                final T shardLower = table[i].lowerBound;
+                final T shardUpper = i + 1 < table.length ? table[i + 1].lowerBound : null;
+                if (upperBound != null && shardLower != null && shardLower.compareTo(upperBound) >= 0) {
+                    break;
+                }
+                if (lowerBound != null && shardUpper != null && shardUpper.compareTo(lowerBound) <= 0) {
+                    continue;
+                }
+
+                final List<T> contents = table[i].contents();
+                if (contents == null) {
+                    continue retry;
+                }
+                for (T item : contents) {
+                    if ((lowerBound == null || lowerBound.compareTo(item) <= 0) &&
+                        (upperBound == null || item.compareTo(upperBound) < 0)) {
+                        range.add(item);
+                    }
+                }
+            }
+            return range;
+        }
+    }
+}
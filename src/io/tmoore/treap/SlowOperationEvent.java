@@ -0,0 +1,42 @@
+package io.tmoore.treap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a {@link Treap} operation which took at least the slow threshold of its
+ * {@link TreapMetrics}. It records the shape of the search alongside its duration, so a slow operation
+ * on a long path can be told apart from one that was merely descheduled.
+ */
+@Name("io.tmoore.treap.SlowOperation")
+@Label("Slow Treap Operation")
+@Category("Treap")
+@Description("A Treap lookup, insertion or removal which took at least the configured slow threshold")
+@StackTrace(true)
+final class SlowOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Size")
+    @Description("Number of elements in the tree")
+    int size;
+
+    @Label("Path Length")
+    @Description("Number of nodes visited")
+    int pathLength;
+
+    @Label("Comparisons")
+    int comparisons;
+
+    @Label("Rotations")
+    int rotations;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
@@ -0,0 +1,118 @@
+package io.tmoore.treap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The codecs behind {@link ElementCodec#integers()}, {@link ElementCodec#longs()} and
+ * {@link ElementCodec#strings()}.
+ */
+final class StandardCodecs {
+    private StandardCodecs() {
+    }
+
+    static final ElementCodec<Integer> INTEGERS = new ElementCodec<Integer>() {
+        @Override
+        public void write(Integer previous, Integer value, DataOutput out) throws IOException {
+            if (previous == null) {
+                out.writeInt(value);
+            }
+            else {
+                writeVarLong(out, (long) value - previous);
+            }
+        }
+
+        @Override
+        public Integer read(Integer previous, DataInput in) throws IOException {
+            if (previous == null) {
+                return in.readInt();
+            }
+            final long value = previous + readVarLong(in);
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new StreamCorruptedException("Integer out of range: " + value);
+            }
+            return (int) value;
+        }
+    };
+
+    static final ElementCodec<Long> LONGS = new ElementCodec<Long>() {
+        @Override
+        public void write(Long previous, Long value, DataOutput out) throws IOException {
+            if (previous == null) {
+                out.writeLong(value);
+            }
+            else {
+                // The gap between ascending longs may overflow a signed long, but never an unsigned one.
+                writeVarLong(out, value - previous);
+            }
+        }
+
+        @Override
+        public Long read(Long previous, DataInput in) throws IOException {
+            return previous == null ? in.readLong() : previous + readVarLong(in);
+        }
+    };
+
+    static final ElementCodec<String> STRINGS = new ElementCodec<String>() {
+        @Override
+        public void write(String previous, String value, DataOutput out) throws IOException {
+            int shared = 0;
+            if (previous != null) {
+                final int limit = Math.min(previous.length(), value.length());
+                while (shared < limit && previous.charAt(shared) == value.charAt(shared)) {
+                    shared++;
+                }
+                // Never split a surrogate pair, so the suffix is always well-formed UTF-16.
+                if (shared > 0 && Character.isHighSurrogate(value.charAt(shared - 1))) {
+                    shared--;
+                }
+            }
+
+            final byte[] suffix = value.substring(shared).getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, shared);
+            writeVarLong(out, suffix.length);
+            out.write(suffix);
+        }
+
+        @Override
+        public String read(String previous, DataInput in) throws IOException {
+            final long shared = readVarLong(in);
+            final long length = readVarLong(in);
+            if (shared > (previous == null ? 0 : previous.length()) || length > Integer.MAX_VALUE) {
+                throw new StreamCorruptedException("Malformed string header");
+            }
+
+            final byte[] suffix = new byte[(int) length];
+            in.readFully(suffix);
+            final String rest = new String(suffix, StandardCharsets.UTF_8);
+            return shared == 0 ? rest : previous.substring(0, (int) shared) + rest;
+        }
+    };
+
+    /**
+     * Write a value as an unsigned variable-length integer: seven bits per byte, least significant
+     * first, with the high bit set on every byte but the last.
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Variable-length integer is too long");
+    }
+}
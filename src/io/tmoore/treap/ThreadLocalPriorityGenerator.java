@@ -0,0 +1,15 @@
+package io.tmoore.treap;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holder for the stateless {@link PriorityGenerator#threadLocal()} instance.
+ */
+enum ThreadLocalPriorityGenerator implements PriorityGenerator {
+    INSTANCE;
+
+    @Override
+    public int nextPriority() {
+        return ThreadLocalRandom.current().nextInt(MIN_PRIORITY, MAX_PRIORITY + 1);
+    }
+}
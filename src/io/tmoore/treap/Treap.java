@@ -1,37 +1,140 @@
 package io.tmoore.treap;
 
 import java.util.ArrayDeque;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
 import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-public class Treap<T extends Comparable<T>> implements Collection<T> {
+public class Treap<T> implements NavigableSet<T> {
 
     private TreapNode<T> root = null;
 
+    /**
+     * The ordering given at construction, or {@code null} for natural ordering, and the ordering actually
+     * used to compare elements, which is never {@code null}.
+     */
+    private final Comparator<? super T> comparator;
+    private final Comparator<? super T> order;
+
+    /**
+     * Scratch stack for the search path of {@link #add} and {@link #remove}, reused between calls.
+     */
+    private final Deque<TreapNode<T>> path = new ArrayDeque<>();
+
+    private final PriorityGenerator priorities;
+
+    /**
+     * Count of structural changes, so that iterators can fail fast.
+     */
+    private int modCount = 0;
+
+    /**
+     * Whether a successful lookup lifts the element it finds towards the root.
+     */
+    private boolean accessAdaptive = false;
+
+    /**
+     * Attached metrics, or {@code null} when they are off.
+     */
+    private TreapMetrics metrics = null;
+
     // CONSTRUCTORS
 
     @SuppressWarnings("WeakerAccess")
     public Treap() {
+        this(PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Create an empty {@link Treap} whose nodes draw their priorities from the given generator, for
+     * example {@link PriorityGenerator#seeded(long)} for a reproducible tree shape.
+     *
+     * @param priorities the source of node priorities
+     */
+    @SuppressWarnings("WeakerAccess")
+    public Treap(PriorityGenerator priorities) {
+        this((Comparator<? super T>) null, priorities);
+    }
+
+    /**
+     * Create an empty {@link Treap} ordered by the given comparator. As with {@link java.util.TreeSet},
+     * two elements the comparator finds equal are the same element, whatever their {@code equals}
+     * says.
+     *
+     * @param comparator the ordering of the elements, or {@code null} for their natural ordering
+     */
+    @SuppressWarnings("WeakerAccess")
+    public Treap(Comparator<? super T> comparator) {
+        this(comparator, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Create an empty {@link Treap} ordered by the given comparator, whose nodes draw their priorities
+     * from the given generator.
+     *
+     * @param comparator the ordering of the elements, or {@code null} for their natural ordering
+     * @param priorities the source of node priorities
+     * @see #Treap(Comparator)
+     */
+    @SuppressWarnings("WeakerAccess")
+    public Treap(Comparator<? super T> comparator, PriorityGenerator priorities) {
+        this.priorities = Objects.requireNonNull(priorities);
+        this.comparator = comparator;
+        this.order = comparator == null ? TreapNode.NATURAL_ORDER : comparator;
     }
 
+    /**
+     * Create a {@link Treap} holding the distinct elements of the given collection, in their natural
+     * ordering. This runs in linear time when the collection is already in ascending order (for example
+     * a naturally ordered {@link SortedSet}), and otherwise sorts a copy first.
+     *
+     * @param fromCollection the initial elements
+     */
+    @SuppressWarnings("WeakerAccess")
+    public Treap(Collection<? extends T> fromCollection) {
+        this(fromCollection, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Create a {@link Treap} holding the distinct elements of the given collection, whose nodes draw
+     * their priorities from the given generator.
+     *
+     * @param fromCollection the initial elements
+     * @param priorities     the source of node priorities
+     * @see #Treap(Collection)
+     */
     @SuppressWarnings("WeakerAccess")
-    public Treap(Collection<T> fromCollection) {
+    public Treap(Collection<? extends T> fromCollection, PriorityGenerator priorities) {
+        this(priorities);
         addAll(fromCollection);
     }
 
     Treap(TreapNode<T> root) {
+        this(root, PriorityGenerator.threadLocal());
+    }
+
+    Treap(TreapNode<T> root, PriorityGenerator priorities) {
+        this(root, null, priorities);
+    }
+
+    Treap(TreapNode<T> root, Comparator<? super T> comparator, PriorityGenerator priorities) {
+        this(comparator, priorities);
         this.root = root;
     }
 
@@ -39,10 +142,113 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
         return root;
     }
 
+    PriorityGenerator getPriorities() {
+        return priorities;
+    }
+
+    /**
+     * Create a leaf node for this {@link Treap}. Subclasses whose nodes cache more than their subtree
+     * size override this, and every node of theirs is created through it.
+     *
+     * @param value    the value to hold
+     * @param priority the node's heap priority
+     * @return a new node with no children
+     */
+    TreapNode<T> newNode(T value, int priority) {
+        return new TreapNode<>(value, priority);
+    }
+
+    /**
+     * Create a {@link Treap} of the same kind as this one around an existing tree, as {@link #split}
+     * returns.
+     *
+     * @param root the root of the tree, which must have been built with {@link #newNode}
+     * @return a new {@link Treap} sharing this one's ordering and priority generator
+     */
+    Treap<T> newTreap(TreapNode<T> root) {
+        return new Treap<>(root, comparator, priorities);
+    }
+
+    /**
+     * Identify the kind of node {@link #newNode} creates. Nodes of one kind may only be linked into a
+     * tree of the same kind, so subclasses which override {@link #newNode} override this as well.
+     *
+     * @return a value equal to that of every {@link Treap} whose nodes can be linked with this one's
+     */
+    Object nodeType() {
+        return TreapNode.class;
+    }
+
+    /**
+     * Get a {@link Treap} whose nodes can be linked into this one's tree, holding the elements of the
+     * given one. If its nodes are of another kind, its elements are copied into new nodes in linear time
+     * and {@code other} is emptied.
+     */
+    private Treap<T> adopt(Treap<T> other) {
+        if (Objects.equals(nodeType(), other.nodeType())) {
+            return other;
+        }
+
+        final Treap<T> copy = newTreap(TreapNode.build(other.asList(), priorities, this::newNode));
+        other.clear();
+        return copy;
+    }
+
+    /**
+     * Get the metrics attached to this {@link Treap}.
+     *
+     * @return the attached metrics, or {@code null} if there are none
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Attach metrics to this {@link Treap}, so that every later {@link #contains}, {@link #add} and
+     * {@link #remove} is measured by them, or detach them. Without metrics those operations are not
+     * measured at all.
+     *
+     * @param metrics the metrics to record into, or {@code null} to stop measuring
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void setMetrics(TreapMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return whether this {@link Treap} adapts its shape to lookups
+     * @see #setAccessAdaptive(boolean)
+     */
+    @SuppressWarnings("WeakerAccess")
+    public boolean isAccessAdaptive() {
+        return accessAdaptive;
+    }
+
+    /**
+     * Turn access-adaptive lookups on or off. While on, each successful {@link #contains} gives the
+     * element it finds a fresh random priority, keeps the greater of that and its current one, and
+     * rotates the element up past every ancestor it now outranks. An element looked up k times then has
+     * the best of k + 1 priorities, so elements which are looked up often settle near the root, while
+     * priorities stay within the generator's range and the tree stays a valid treap.
+     *
+     * <p>A lookup which rotates the tree is a structural modification, as an access-ordered
+     * {@link java.util.LinkedHashMap} treats {@code get}: it fails any iterator in progress, and
+     * lookups must not run concurrently with each other.
+     *
+     * @param accessAdaptive whether lookups should restructure the tree
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void setAccessAdaptive(boolean accessAdaptive) {
+        this.accessAdaptive = accessAdaptive;
+    }
+
     @SuppressWarnings("WeakerAccess")
     public List<T> asList() {
         ArrayList<T> collector = new ArrayList<>();
-        root.addContentsToList(collector);
+        if (root != null) {
+            root.addContentsToList(collector);
+        }
         return collector;
     }
 
@@ -51,25 +257,236 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
         return root == null ? 0 : root.size();
     }
 
+    /**
+     * Get the element at the given position in ascending order.
+     *
+     * @param index zero-based position of the element
+     * @return the element at that position
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return root.get(index);
+    }
+
+    /**
+     * Find the position of the given element in ascending order.
+     *
+     * @param item the element to look for
+     * @return the zero-based position of the element, or {@code -1} if it is not in this {@link Treap}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public int rankOf(T item) {
+        Objects.requireNonNull(item);
+        return root == null ? -1 : root.rankOf(item, order);
+    }
+
+    /**
+     * Count the elements which are strictly less than the given item. The item itself does not
+     * need to be in this {@link Treap}.
+     *
+     * @param item the upper (exclusive) bound
+     * @return the number of elements less than {@code item}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public int countLessThan(T item) {
+        Objects.requireNonNull(item);
+        return root == null ? 0 : root.countLessThan(item, false, order);
+    }
+
+    // NAVIGATION
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        if (root == null) {
+            throw new NoSuchElementException("The Treap is empty.");
+        }
+        return root.first();
+    }
+
+    @Override
+    public T last() {
+        if (root == null) {
+            throw new NoSuchElementException("The Treap is empty.");
+        }
+        return root.last();
+    }
+
+    @Override
+    public T lower(T t) {
+        return lowerValue(t, false);
+    }
+
+    @Override
+    public T floor(T t) {
+        return lowerValue(t, true);
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return higherValue(t, true);
+    }
+
+    @Override
+    public T higher(T t) {
+        return higherValue(t, false);
+    }
+
+    @Override
+    public T pollFirst() {
+        if (root == null) {
+            return null;
+        }
+        final T first = root.first();
+        remove(first);
+        return first;
+    }
+
+    @Override
+    public T pollLast() {
+        if (root == null) {
+            return null;
+        }
+        final T last = root.last();
+        remove(last);
+        return last;
+    }
+
+    private T lowerValue(T item, boolean inclusive) {
+        Objects.requireNonNull(item);
+        return root == null ? null : root.lower(item, inclusive, order);
+    }
+
+    private T higherValue(T item, boolean inclusive) {
+        Objects.requireNonNull(item);
+        return root == null ? null : root.higher(item, inclusive, order);
+    }
+
+    private int countBelow(T item, boolean inclusive) {
+        return root == null ? 0 : root.countLessThan(item, inclusive, order);
+    }
+
+    // RANGE VIEWS
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return new SubSet(null, false, null, false, true);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        return new SubSet(null, false, null, false, false)
+                .subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return new SubSet(null, false, null, false, false).headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return new SubSet(null, false, null, false, false).tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
     @Override
     public boolean isEmpty() {
         return root == null;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the object cannot be compared with the elements of this
+     *                            {@link Treap}
+     */
     @Override
     public boolean contains(Object o) {
-        if (o == null || root == null || root.getValue() == null
-            || root.getValue().getClass() != o.getClass()) {
+        if (o == null || root == null) {
             return false;
         }
 
         @SuppressWarnings("unchecked") T item = (T)o;
 
-        return root.contains(item);
+        if (accessAdaptive) {
+            return access(item);
+        }
+        final TreapMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return root.contains(item, order, null);
+        }
+        // Each lookup has its own trace, so that concurrent readers do not write to shared state.
+        final TreapMetrics.Trace trace = new TreapMetrics.Trace();
+        final long start = System.nanoTime();
+        final boolean found = root.contains(item, order, trace);
+        metrics.record(TreapMetrics.Operation.CONTAINS, trace, root.size(), start);
+        return found;
     }
 
     /**
-     * Traverses {@link Treap} elements in natural ascending order.
+     * Look up an item in access-adaptive mode, lifting it towards the root if it is found.
+     *
+     * @see #setAccessAdaptive(boolean)
+     */
+    private boolean access(T item) {
+        final TreapMetrics metrics = this.metrics;
+        final TreapMetrics.Trace trace = metrics == null ? null : new TreapMetrics.Trace();
+        final long start = metrics == null ? 0 : System.nanoTime();
+        final TreapNode<T> node = root.find(item, path, order, trace);
+        if (node == null) {
+            if (metrics != null) {
+                metrics.record(TreapMetrics.Operation.CONTAINS, trace, root.size(), start);
+            }
+            return false;
+        }
+
+        final int priority = priorities.nextPriority();
+        if (priority > node.getPriority()) {
+            if (!path.isEmpty() && priority > path.peek().getPriority()) {
+                modCount++;
+            }
+            root = root.raise(node, priority, path, trace);
+        }
+        else {
+            path.clear();
+        }
+
+        if (metrics != null) {
+            metrics.record(TreapMetrics.Operation.CONTAINS, trace, root.size(), start);
+        }
+        return true;
+    }
+
+    /**
+     * Traverses {@link Treap} elements in ascending order.
      *
      * {@inheritDoc}
      */
@@ -107,50 +524,198 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
 
     boolean add(T newItem, int priority) {
         Objects.requireNonNull(newItem);
-        return add(new TreapNode<>(newItem, priority));
+        return add(newNode(newItem, priority));
     }
 
     private boolean add(TreapNode<T> newNode) {
         if (root == null) {
             root = newNode;
-        }
-        if (root.add(newNode)) {
-            TreapNode<T> newRoot = root.balance();
-            if (newRoot != root) {
-                root = newRoot;
-            }
+            modCount++;
             return true;
         }
-        return false;
+        final int oldSize = root.size();
+        final TreapMetrics metrics = this.metrics;
+        if (metrics == null) {
+            root = root.add(newNode, path, order, null);
+        }
+        else {
+            final TreapMetrics.Trace trace = new TreapMetrics.Trace();
+            final long start = System.nanoTime();
+            root = root.add(newNode, path, order, trace);
+            metrics.record(TreapMetrics.Operation.ADD, trace, oldSize, start);
+        }
+        if (root.size() == oldSize) {
+            return false;
+        }
+        modCount++;
+        return true;
     }
 
     @Override
     public boolean add(T newItem) {
         Objects.requireNonNull(newItem);
-        return add(new TreapNode<>(newItem));
+        return add(newNode(newItem, priorities.nextPriority()));
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the object cannot be compared with the elements of this
+     *                            {@link Treap}
+     */
     @Override
     public boolean remove(Object o) {
-        if (o == null || root == null || root.getValue() == null
-            || root.getValue().getClass() != o.getClass()) {
+        if (o == null || root == null) {
             return false;
         }
 
         @SuppressWarnings("unchecked")
         T item = (T) o;
 
-        if (root.remove(item)) {
-            TreapNode<T> newRoot = root.balance();
-            if (newRoot != root) {
-                root = newRoot;
-            }
-            if (root.getPriority() == Integer.MIN_VALUE) {
-                root = null;
-            }
-            return true;
+        final int oldSize = root.size();
+        final TreapMetrics metrics = this.metrics;
+        if (metrics == null) {
+            root = root.remove(item, path, order, null);
+        }
+        else {
+            final TreapMetrics.Trace trace = new TreapMetrics.Trace();
+            final long start = System.nanoTime();
+            root = root.remove(item, path, order, trace);
+            metrics.record(TreapMetrics.Operation.REMOVE, trace, oldSize, start);
+        }
+        if (size() == oldSize) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Split this {@link Treap} around the given key. Every element at or above {@code key} is moved into
+     * the returned {@link Treap}, and every element below it stays in this one. The nodes themselves are
+     * relinked rather than copied, so this takes O(log n) expected time.
+     *
+     * @param key the least element of the returned {@link Treap}, which need not be present
+     * @return a {@link Treap} holding the elements greater than or equal to {@code key}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public Treap<T> split(T key) {
+        final TreapNode.Split<T> split = TreapNode.split(root, key, order);
+        root = split.less;
+        modCount++;
+        return newTreap(TreapNode.merge(split.equal, split.greater));
+    }
+
+    /**
+     * Move every element of the given {@link Treap} into this one, leaving {@code other} empty. The two
+     * key ranges must not overlap: either every element of {@code other} is greater than every element
+     * of this {@link Treap}, or every one is less. The nodes are relinked rather than copied, so this
+     * takes O(log n) expected time, unless only one of the two maintains extra state in its nodes (as an
+     * {@link AggregatingTreap} does); then the elements of {@code other} are first copied into nodes like
+     * this one's, in linear time.
+     *
+     * @param other the {@link Treap} to absorb
+     * @throws IllegalArgumentException if the key ranges of the two {@link Treap}s overlap, or they are
+     *                                  ordered differently
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void join(Treap<T> other) {
+        checkSameOrder(other);
+        if (other.root == null) {
+            return;
+        }
+
+        // Check the ranges before anything is copied or relinked, so that a failed join changes nothing.
+        final boolean before = root != null && order.compare(other.root.last(), root.first()) < 0;
+        if (root != null && !before && order.compare(root.last(), other.root.first()) >= 0) {
+            throw new IllegalArgumentException("Cannot join treaps with overlapping key ranges");
+        }
+
+        final TreapNode<T> joined = adopt(other).root;
+        if (root == null) {
+            root = joined;
+        }
+        else if (before) {
+            root = TreapNode.merge(joined, root);
+        }
+        else {
+            root = TreapNode.merge(root, joined);
+        }
+        other.root = null;
+        modCount++;
+        other.modCount++;
+    }
+
+    /**
+     * Move every element of the given {@link Treap} which is not already present into this one, leaving
+     * {@code other} empty. Large operands are processed in parallel on the common
+     * {@link ForkJoinPool}; the total work is O(m log(n / m + 1)) for sizes m &le; n. Nodes of another
+     * kind are copied first, as by {@link #join(Treap)}.
+     *
+     * @param other the {@link Treap} to absorb
+     * @return {@code true} if this {@link Treap} changed
+     */
+    @SuppressWarnings("WeakerAccess")
+    public boolean union(Treap<T> other) {
+        return apply(TreapNode.SetOperation.Kind.UNION, other);
+    }
+
+    /**
+     * Keep only the elements which are also present in the given {@link Treap}, leaving {@code other}
+     * empty. Large operands are processed in parallel on the common {@link ForkJoinPool}; the total
+     * work is O(m log(n / m + 1)) for sizes m &le; n. Nodes of another kind are copied first, as by
+     * {@link #join(Treap)}.
+     *
+     * @param other the {@link Treap} to intersect with
+     * @return {@code true} if this {@link Treap} changed
+     */
+    @SuppressWarnings("WeakerAccess")
+    public boolean intersection(Treap<T> other) {
+        return apply(TreapNode.SetOperation.Kind.INTERSECTION, other);
+    }
+
+    /**
+     * Remove every element which is present in the given {@link Treap}, leaving {@code other} empty.
+     * Large operands are processed in parallel on the common {@link ForkJoinPool}; the total work is
+     * O(m log(n / m + 1)) for sizes m &le; n. Nodes of another kind are copied first, as by
+     * {@link #join(Treap)}.
+     *
+     * @param other the {@link Treap} whose elements should be removed
+     * @return {@code true} if this {@link Treap} changed
+     */
+    @SuppressWarnings("WeakerAccess")
+    public boolean difference(Treap<T> other) {
+        return apply(TreapNode.SetOperation.Kind.DIFFERENCE, other);
+    }
+
+    private boolean apply(TreapNode.SetOperation.Kind kind, Treap<T> other) {
+        checkSameOrder(other);
+        if (other == this) {
+            if (kind != TreapNode.SetOperation.Kind.DIFFERENCE || root == null) {
+                return false;
+            }
+            root = null;
+            modCount++;
+            return true;
+        }
+
+        final int oldSize = size();
+        final TreapNode<T> operand = adopt(other).root;
+        root = ForkJoinPool.commonPool().invoke(new TreapNode.SetOperation<>(kind, root, operand, order));
+        other.root = null;
+        modCount++;
+        other.modCount++;
+        return size() != oldSize;
+    }
+
+    /**
+     * Check that the given {@link Treap} is ordered the same way as this one, so that their trees can be
+     * combined directly.
+     */
+    private void checkSameOrder(Treap<T> other) {
+        if (!Objects.equals(comparator, Objects.requireNonNull(other).comparator)) {
+            throw new IllegalArgumentException("Cannot combine treaps with different orderings");
         }
-        return false;
     }
 
     @Override
@@ -164,8 +729,23 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * When this {@link Treap} is empty the elements are bulk-loaded instead, in linear time if they are
+     * already in ascending order.
+     */
     @Override
     public boolean addAll(Collection<? extends T> c) {
+        if (root == null) {
+            root = TreapNode.build(sortedDistinct(c, comparator), priorities, this::newNode);
+            if (root == null) {
+                return false;
+            }
+            modCount++;
+            return true;
+        }
+
         boolean changed = false;
 
         for (T item : Objects.requireNonNull(c)) {
@@ -175,6 +755,48 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
         return changed;
     }
 
+    /**
+     * Copy the given elements into a list in strictly ascending natural order.
+     *
+     * @param c the elements to copy
+     * @return the distinct elements in ascending order
+     * @see #sortedDistinct(Collection, Comparator)
+     */
+    static <T extends Comparable<T>> List<T> sortedDistinct(Collection<? extends T> c) {
+        return sortedDistinct(c, null);
+    }
+
+    /**
+     * Copy the given elements into a list in strictly ascending order. {@link SortedSet}s with the same
+     * ordering and already-sorted, duplicate-free collections are copied as-is; anything else is sorted
+     * and deduplicated.
+     *
+     * @param c          the elements to copy
+     * @param comparator the ordering, or {@code null} for natural ordering
+     * @return the distinct elements in ascending order
+     */
+    static <T> List<T> sortedDistinct(Collection<? extends T> c, Comparator<? super T> comparator) {
+        final List<T> values = new ArrayList<>(Objects.requireNonNull(c));
+        if (c instanceof SortedSet && Objects.equals(((SortedSet<?>) c).comparator(), comparator)) {
+            return values;
+        }
+
+        final Comparator<? super T> order = comparator == null ? TreapNode.NATURAL_ORDER : comparator;
+        for (int i = 1; i < values.size(); i++) {
+            if (order.compare(values.get(i - 1), values.get(i)) >= 0) {
+                values.sort(order);
+                int distinct = 1;
+                for (int j = 1; j < values.size(); j++) {
+                    if (order.compare(values.get(distinct - 1), values.get(j)) != 0) {
+                        values.set(distinct++, values.get(j));
+                    }
+                }
+                return values.subList(0, distinct);
+            }
+        }
+        return values;
+    }
+
     @Override
     public boolean removeAll(Collection<?> c) {
         boolean changed = false;
@@ -186,23 +808,68 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
         return changed;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The retained elements are collected in order and rebuilt into a new tree in linear time, rather
+     * than removed one at a time.
+     */
     @Override
     public boolean retainAll(Collection<?> c) {
         Objects.requireNonNull(c);
-        boolean changed = false;
+        if (root == null) {
+            return false;
+        }
 
-        for (T item : this) {
-            if (!c.contains(item)) {
-                changed |= this.remove(item);
+        final List<T> retained = new ArrayList<>();
+        for (T item : asList()) {
+            if (c.contains(item)) {
+                retained.add(item);
             }
         }
 
-        return changed;
+        if (retained.size() == size()) {
+            return false;
+        }
+        root = TreapNode.build(retained, priorities, this::newNode);
+        modCount++;
+        return true;
     }
 
     @Override
     public void clear() {
         root = null;
+        modCount++;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Set)) {
+            return false;
+        }
+
+        final Collection<?> other = (Collection<?>) o;
+        if (other.size() != size()) {
+            return false;
+        }
+        try {
+            return containsAll(other);
+        }
+        catch (ClassCastException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (T item : this) {
+            hash += item.hashCode();
+        }
+        return hash;
     }
 
     @Override
@@ -214,111 +881,549 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
             sb.append(TreapNode.NULL_NODE_STRING);
         }
         else {
-            root.toStringRecursive(sb, 0);
+            root.toStringTree(sb, 0);
         }
         return sb.toString();
     }
 
 
     /**
-     * A left, depth-first tree iterator which iterates over the elements of the parent {@link Treap}
-     * in natural ascending order.
+     * A live view of the elements of the parent {@link Treap} within an optional lower and upper bound,
+     * in ascending or descending order. Every query descends the parent's tree directly, so lookups and
+     * {@link #size()} are O(log n) and iteration only visits the elements in range.
      */
-    private class TreapIterator implements Iterator<T> {
-        Deque<TreapNode<T>> stack = new ArrayDeque<>(size());
-        T lastReturned = null;
+    private class SubSet extends AbstractSet<T> implements NavigableSet<T> {
+        /**
+         * Lower bound, or {@code null} if unbounded below.
+         */
+        private final T lo;
+        private final boolean loInclusive;
+        /**
+         * Upper bound, or {@code null} if unbounded above.
+         */
+        private final T hi;
+        private final boolean hiInclusive;
+        private final boolean descending;
+
+        SubSet(T lo, boolean loInclusive, T hi, boolean hiInclusive, boolean descending) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(T item) {
+            if (lo == null) {
+                return false;
+            }
+            final int comparison = order.compare(item, lo);
+            return comparison < 0 || comparison == 0 && !loInclusive;
+        }
+
+        private boolean tooHigh(T item) {
+            if (hi == null) {
+                return false;
+            }
+            final int comparison = order.compare(item, hi);
+            return comparison > 0 || comparison == 0 && !hiInclusive;
+        }
+
+        private boolean inRange(Object o) {
+            if (o == null || root == null) {
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            T item = (T) o;
+            return !tooLow(item) && !tooHigh(item);
+        }
+
+        // Navigation in ascending order, clamped to the range.
+
+        private T absLowest() {
+            final T item = lo == null ? (root == null ? null : root.first()) : higherValue(lo, loInclusive);
+            return item == null || tooHigh(item) ? null : item;
+        }
+
+        private T absHighest() {
+            final T item = hi == null ? (root == null ? null : root.last()) : lowerValue(hi, hiInclusive);
+            return item == null || tooLow(item) ? null : item;
+        }
+
+        private T absHigher(T key, boolean inclusive) {
+            if (tooLow(key)) {
+                return absLowest();
+            }
+            final T item = higherValue(key, inclusive);
+            return item == null || tooHigh(item) ? null : item;
+        }
+
+        private T absLower(T key, boolean inclusive) {
+            if (tooHigh(key)) {
+                return absHighest();
+            }
+            final T item = lowerValue(key, inclusive);
+            return item == null || tooLow(item) ? null : item;
+        }
+
+        private T orThrow(T item) {
+            if (item == null) {
+                throw new NoSuchElementException("The range is empty.");
+            }
+            return item;
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return descending ? Collections.reverseOrder(Treap.this.comparator) : Treap.this.comparator;
+        }
+
+        @Override
+        public T first() {
+            return orThrow(descending ? absHighest() : absLowest());
+        }
+
+        @Override
+        public T last() {
+            return orThrow(descending ? absLowest() : absHighest());
+        }
+
+        @Override
+        public T lower(T t) {
+            return descending ? absHigher(t, false) : absLower(t, false);
+        }
+
+        @Override
+        public T floor(T t) {
+            return descending ? absHigher(t, true) : absLower(t, true);
+        }
+
+        @Override
+        public T ceiling(T t) {
+            return descending ? absLower(t, true) : absHigher(t, true);
+        }
+
+        @Override
+        public T higher(T t) {
+            return descending ? absLower(t, false) : absHigher(t, false);
+        }
+
+        @Override
+        public T pollFirst() {
+            final T item = descending ? absHighest() : absLowest();
+            if (item != null) {
+                Treap.this.remove(item);
+            }
+            return item;
+        }
+
+        @Override
+        public T pollLast() {
+            final T item = descending ? absLowest() : absHighest();
+            if (item != null) {
+                Treap.this.remove(item);
+            }
+            return item;
+        }
+
+        @Override
+        public int size() {
+            final int upper = hi == null ? Treap.this.size() : countBelow(hi, hiInclusive);
+            final int lower = lo == null ? 0 : countBelow(lo, !loInclusive);
+            return Math.max(0, upper - lower);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return absLowest() == null;
+        }
 
-        private TreapIterator() {
-            if (Treap.this.root != null) {
-                stack.push(Treap.this.root);
+        @Override
+        public boolean contains(Object o) {
+            return inRange(o) && Treap.this.contains(o);
+        }
+
+        @Override
+        public boolean add(T t) {
+            Objects.requireNonNull(t);
+            if (tooLow(t) || tooHigh(t)) {
+                throw new IllegalArgumentException("Element out of range: " + t);
+            }
+            return Treap.this.add(t);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return inRange(o) && Treap.this.remove(o);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new RangeIterator(descending);
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            return new RangeIterator(!descending);
+        }
+
+        @Override
+        public NavigableSet<T> descendingSet() {
+            return new SubSet(lo, loInclusive, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+            checkBound(fromElement, fromInclusive);
+            checkBound(toElement, toInclusive);
+            return descending
+                   ? range(toElement, toInclusive, fromElement, fromInclusive)
+                   : range(fromElement, fromInclusive, toElement, toInclusive);
+        }
+
+        @Override
+        public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+            checkBound(toElement, inclusive);
+            return descending
+                   ? range(toElement, inclusive, hi, hiInclusive)
+                   : range(lo, loInclusive, toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+            checkBound(fromElement, inclusive);
+            return descending
+                   ? range(lo, loInclusive, fromElement, inclusive)
+                   : range(fromElement, inclusive, hi, hiInclusive);
+        }
+
+        @Override
+        public SortedSet<T> subSet(T fromElement, T toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> headSet(T toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(T fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        /**
+         * Check that a requested bound lies within this view. An exclusive bound may sit exactly on an
+         * exclusive bound of this view.
+         */
+        private void checkBound(T bound, boolean inclusive) {
+            Objects.requireNonNull(bound);
+            final boolean outOfRange = inclusive
+                                       ? tooLow(bound) || tooHigh(bound)
+                                       : lo != null && order.compare(bound, lo) < 0
+                                         || hi != null && order.compare(bound, hi) > 0;
+            if (outOfRange) {
+                throw new IllegalArgumentException("Bound out of range: " + bound);
+            }
+        }
+
+        /**
+         * Create a view over the given absolute bounds, in the same order as this one.
+         */
+        private NavigableSet<T> range(T newLo, boolean newLoInclusive, T newHi, boolean newHiInclusive) {
+            if (newLo != null && newHi != null && order.compare(newLo, newHi) > 0) {
+                throw new IllegalArgumentException("Lower bound above upper bound: " + newLo + " > " + newHi);
+            }
+            return new SubSet(newLo, newLoInclusive, newHi, newHiInclusive, descending);
+        }
+
+        /**
+         * In-order iterator over the range, in either direction. The stack holds the next node on top,
+         * then each ancestor still to be visited; only the next node is checked against the far bound.
+         */
+        private final class RangeIterator implements Iterator<T> {
+            private final boolean descending;
+            private final Deque<TreapNode<T>> stack = new ArrayDeque<>();
+            private T lastReturned = null;
+            private int expectedModCount = modCount;
+
+            RangeIterator(boolean descending) {
+                this.descending = descending;
+                TreapNode<T> current = root;
+                while (current != null) {
+                    if (descending ? tooHigh(current.getValue()) : tooLow(current.getValue())) {
+                        current = descending ? current.getLeft() : current.getRight();
+                    }
+                    else {
+                        stack.push(current);
+                        current = descending ? current.getRight() : current.getLeft();
+                    }
+                }
+                stopAtEnd();
+            }
+
+            private void stopAtEnd() {
+                if (!stack.isEmpty()
+                    && (descending ? tooLow(stack.peek().getValue()) : tooHigh(stack.peek().getValue()))) {
+                    stack.clear();
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                checkForComodification();
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException("The Iterator is empty.");
+                }
+
+                final TreapNode<T> next = stack.pop();
+                for (TreapNode<T> n = descending ? next.getLeft() : next.getRight();
+                     n != null;
+                     n = descending ? n.getRight() : n.getLeft()) {
+                    stack.push(n);
+                }
+                stopAtEnd();
+                lastReturned = next.getValue();
+                return lastReturned;
+            }
+
+            /**
+             * Removal unlinks the node by merging its children, which only relinks the far-side
+             * pointers of nodes already visited and the near-side pointers of nodes still to come, so the
+             * pending stack stays valid.
+             */
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException("remove called twice or before next was ever called");
+                }
+                checkForComodification();
+
+                Treap.this.remove(lastReturned);
+                expectedModCount = modCount;
+                lastReturned = null;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
             }
         }
+    }
+
+    /**
+     * Ascending iterator over the elements of the parent {@link Treap}. Its cursor is the path from the
+     * root to the current node, which is O(log n) long: stepping forward descends the left spine of the
+     * current node's right subtree, or climbs back to the nearest ancestor still to come, in amortized
+     * constant time. Nothing is built until the first call to {@link #next()}.
+     */
+    private class TreapIterator implements Iterator<T> {
+        /**
+         * Path from the root to the cursor node, which is on top. The cursor node is the element last
+         * returned while {@link #returned} is set, and otherwise the next element to return.
+         */
+        private final Deque<TreapNode<T>> path = new ArrayDeque<>();
+        private boolean returned = false;
+
+        /**
+         * The number of elements before the cursor.
+         */
+        private int index = 0;
+
+        private int expectedModCount = modCount;
 
         @Override
         public boolean hasNext() {
-            return !stack.isEmpty();
+            return index < size();
         }
 
         @Override
         public T next() {
-            if (stack.isEmpty()) {
+            checkForComodification();
+            if (index >= size()) {
                 throw new NoSuchElementException("The Iterator is empty.");
             }
 
-            TreapNode<T> next = stack.pop();
+            if (path.isEmpty()) {
+                pushLeftSpine(root);
+            }
+            else if (returned) {
+                final TreapNode<T> current = path.peek();
+                if (current.getRight() != null) {
+                    pushLeftSpine(current.getRight());
+                }
+                else {
+                    climb();
+                }
+            }
+            returned = true;
+            index++;
+            return path.peek().getValue();
+        }
 
-            if (next.getRight() != null) {
-                stack.push(next.getRight());
+        private void pushLeftSpine(TreapNode<T> node) {
+            for (TreapNode<T> n = node; n != null; n = n.getLeft()) {
+                path.push(n);
             }
-            if (next.getLeft() != null) {
-                stack.push(next.getLeft());
+        }
+
+        /**
+         * Pop the cursor node, and every ancestor whose right subtree it was in, leaving the nearest
+         * ancestor which is still to come on top.
+         */
+        private void climb() {
+            TreapNode<T> child = path.pop();
+            while (path.peek().getRight() == child) {
+                child = path.pop();
             }
-            lastReturned = next.getValue();
-            return next.getValue();
         }
 
+        /**
+         * Unlink the last element returned by merging its children in its place, fixing the sizes of
+         * the ancestors already on the cursor path, and then move the cursor to the next element.
+         */
         @Override
         public void remove() {
-            if (lastReturned == null) {
+            if (!returned) {
                 throw new IllegalStateException("remove called twice or before next was ever called");
             }
+            checkForComodification();
+
+            final TreapNode<T> removed = path.pop();
+            final TreapNode<T> parent = path.peek();
+            final TreapNode<T> right = removed.getRight();
+            final int successor = TreapNode.size(removed.getLeft());
+            final TreapNode<T> replacement = TreapNode.merge(removed.getLeft(), right);
+            final boolean leftChild = parent != null && parent.getLeft() == removed;
+            if (parent == null) {
+                root = replacement;
+            }
+            else {
+                parent.replaceChild(removed, replacement);
+            }
+            for (TreapNode<T> ancestor : path) {
+                ancestor.updateSize();
+            }
+            modCount++;
+            expectedModCount = modCount;
+            returned = false;
+            index--;
+
+            if (index == size()) {
+                path.clear();
+            }
+            else if (right != null) {
+                // The next element is the first of the old right subtree, which now follows the old
+                // left subtree within the replacement.
+                seek(replacement, successor);
+            }
+            else if (!leftChild) {
+                climb();
+            }
+        }
+
+        /**
+         * Push the path from the given node down to the node at the given in-order position below it.
+         */
+        private void seek(TreapNode<T> node, int position) {
+            TreapNode<T> current = node;
+            while (true) {
+                path.push(current);
+                final int leftSize = TreapNode.size(current.getLeft());
+                if (position < leftSize) {
+                    current = current.getLeft();
+                }
+                else if (position == leftSize) {
+                    return;
+                }
+                else {
+                    position -= leftSize + 1;
+                    current = current.getRight();
+                }
+            }
+        }
 
-            Treap.this.remove(lastReturned);
-            lastReturned = null;
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
         }
     }
 
     /**
-     * {@link Spliterator} for parallel BFS traversal of a {@link TreapNode} and its children.
+     * {@link Spliterator} for in-order traversal of the elements at positions {@code [index, end)} of the
+     * parent {@link Treap}. Splitting halves the position range, so sizes are exact and the halves are
+     * balanced regardless of the tree's shape.
      */
     private class TreapSpliterator implements Spliterator<T> {
-        private static final int CHARACTERISTICS = DISTINCT | NONNULL | SIZED | SUBSIZED;
-        private final Queue<TreapNode<T>> queue = new PriorityQueue<>();
+        private static final int CHARACTERISTICS =
+                DISTINCT | NONNULL | ORDERED | SORTED | SIZED | SUBSIZED;
+
+        private int index;
+        private final int end;
 
         /**
-         * Implementation Note:
-         *
-         * {@link TreapSpliterator} runs into trouble when {@link #trySplit()} is called but the
-         * {@link #queue} only contains the root node. If it creates a new {@link TreapSpliterator}
-         * with one of root's children, but keeps this {@link TreapSpliterator} as-is, then it will
-         * iterate over the chosen child (and all of its children) twice. If it sets this
-         * {@link TreapSpliterator} on, say, the left child, and a new {@link TreapSpliterator} on the
-         * right child, then it will never iterate over root's value. This serves as a marker for when
-         * this {@link TreapSpliterator} has split but the parent value still has not been processed.
+         * In-order cursor: the node at {@link #index} on top, then each ancestor whose left subtree holds
+         * the cursor. Built lazily, since a {@link TreapSpliterator} which is only split never needs one.
          */
-        private T unprocessedParent = null;
+        private Deque<TreapNode<T>> stack;
 
-        TreapSpliterator(TreapNode<T> root) {
-            if (root != null) {
-                queue.add(root);
-            }
+        private TreapSpliterator(int index, int end, Deque<TreapNode<T>> stack) {
+            this.index = index;
+            this.end = end;
+            this.stack = stack;
         }
 
         TreapSpliterator() {
-            this(Treap.this.root);
+            this(0, Treap.this.size(), null);
         }
 
-        @Override
-        public boolean tryAdvance(Consumer<? super T> action) {
-            if (unprocessedParent != null) {
-                action.accept(unprocessedParent);
-                unprocessedParent = null;
-                return true;
+        /**
+         * Build the cursor stack down to the node at {@link #index}, using the subtree sizes to pick a
+         * direction at each level.
+         */
+        private void seek() {
+            stack = new ArrayDeque<>();
+            TreapNode<T> current = root;
+            int remaining = index;
+            while (current != null) {
+                final int leftSize = current.getLeft() == null ? 0 : current.getLeft().size();
+                if (remaining < leftSize) {
+                    stack.push(current);
+                    current = current.getLeft();
+                }
+                else if (remaining == leftSize) {
+                    stack.push(current);
+                    return;
+                }
+                else {
+                    remaining -= leftSize + 1;
+                    current = current.getRight();
+                }
             }
+        }
 
-            if (queue.isEmpty()) {
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            if (index >= end) {
                 return false;
             }
-
-            TreapNode<T> next = queue.remove();
-
-            if (next.getRight() != null) {
-                queue.add(next.getRight());
+            if (stack == null) {
+                seek();
             }
 
-            if (next.getLeft() != null) {
-                queue.add(next.getLeft());
+            final TreapNode<T> next = stack.pop();
+            for (TreapNode<T> n = next.getRight(); n != null; n = n.getLeft()) {
+                stack.push(n);
             }
+            index++;
 
             action.accept(next.getValue());
             return true;
@@ -326,38 +1431,31 @@ public class Treap<T extends Comparable<T>> implements Collection<T> {
 
         @Override
         public Spliterator<T> trySplit() {
-            if (queue.size() == 0) {
+            final int mid = (index + end) >>> 1;
+            if (mid <= index) {
                 return null;
             }
 
-            if (queue.size() == 1) {
-                TreapNode<T> current = queue.remove();
-                unprocessedParent = current.getValue();
-                if (current.getRight() != null) {
-                    queue.add(current.getRight());
-                }
-
-                if (current.getLeft() != null) {
-                    queue.add(current.getLeft());
-                }
-            }
-
-            return new TreapSpliterator(queue.remove());
+            // The prefix starts where this one currently is, so it can take over the cursor as-is.
+            final Spliterator<T> prefix = new TreapSpliterator(index, mid, stack);
+            index = mid;
+            stack = null;
+            return prefix;
         }
 
         @Override
         public long estimateSize() {
-            return getExactSizeIfKnown();
+            return end - index;
         }
 
         @Override
         public long getExactSizeIfKnown() {
-            return (unprocessedParent == null ? 0 : 1) + (queue.isEmpty() ? 0 : queue.peek().size());
+            return estimateSize();
         }
 
         @Override
         public Comparator<? super T> getComparator() {
-            return null;
+            return comparator;
         }
 
         @Override
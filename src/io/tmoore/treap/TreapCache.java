@@ -0,0 +1,763 @@
+package io.tmoore.treap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A sorted map of bounded size, held in a single treap whose heap priorities record how recently or how
+ * often each entry was used. The treap is ordered so that the entry to evict next is always at the
+ * root: putting a new key into a full cache removes the root, merges its two subtrees in its place, and
+ * inserts the new entry, in O(log n) expected time. The same tree answers ordered queries over the keys
+ * ({@link #firstKey()}, {@link #ceilingKey}, {@link #range}, ...), so one structure serves both as the
+ * eviction queue of an access-ordered {@link java.util.LinkedHashMap} and as a sorted index.
+ *
+ * <p>As with an access-ordered {@link java.util.LinkedHashMap}, {@link #get} and {@link #put} count as
+ * uses of an entry, and move it within the tree; {@link #containsKey}, iteration and the ordered queries
+ * do not. Because a use reshapes the tree, it also fails any open iterator.
+ *
+ * <p>Both policies keep a coarse measure of use in the high half of each priority, above a random
+ * tie-breaker. Under {@link Policy#LEAST_RECENTLY_USED} that measure is the epoch of the entry's last use,
+ * where each epoch spans {@code capacity / 8} uses, so entries used within the same epoch are shaped
+ * like a treap with random priorities. The tree then stays O(log n) deep, with a constant factor of the
+ * few epochs held at once, even when keys are used in ascending order. The price is that eviction is
+ * approximate: see {@link Policy#LEAST_RECENTLY_USED}.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class TreapCache<K extends Comparable<K>, V> extends AbstractMap<K, V> {
+    /**
+     * Which entry a full cache evicts to make room for a new one.
+     */
+    public enum Policy {
+        /**
+         * Evict one of the entries which were used longest ago. The evicted entry was last used fewer than
+         * {@code capacity / 8} uses after the least recently used one; caches of fewer than 16 entries
+         * evict exactly the least recently used.
+         */
+        LEAST_RECENTLY_USED,
+
+        /**
+         * Evict the entry which was used the fewest times, choosing at random between equally used
+         * entries. Use counts saturate at {@link Integer#MAX_VALUE}.
+         */
+        LEAST_FREQUENTLY_USED
+    }
+
+    /**
+     * How many epochs of recency a full least-recently-used cache spans.
+     */
+    private static final int EPOCHS = 8;
+
+    /**
+     * The least epoch which no longer fits in the high half of a priority.
+     */
+    private static final long EPOCH_LIMIT = Integer.MAX_VALUE;
+
+    private final int capacity;
+    private final Policy policy;
+    private final long epochLength;
+    private final PriorityGenerator priorities;
+    private Node<K, V> root;
+    private int size = 0;
+    private long clock = 0;
+    private int modCount = 0;
+
+    // CONSTRUCTORS
+
+    /**
+     * Create an empty least-recently-used cache.
+     *
+     * @param capacity the most entries the cache may hold
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapCache(int capacity) {
+        this(capacity, Policy.LEAST_RECENTLY_USED);
+    }
+
+    /**
+     * @param capacity the most entries the cache may hold
+     * @param policy   which entry to evict when full
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapCache(int capacity, Policy policy) {
+        this(capacity, policy, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * @param capacity   the most entries the cache may hold
+     * @param policy     which entry to evict when full
+     * @param priorities the source of the random priorities which break ties between entries used in
+     *                   the same epoch, or equally often
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapCache(int capacity, Policy policy, PriorityGenerator priorities) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = Objects.requireNonNull(policy);
+        this.epochLength = Math.max(1, capacity / EPOCHS);
+        this.priorities = Objects.requireNonNull(priorities);
+    }
+
+    // ACCESSORS
+
+    /**
+     * @return the most entries this cache may hold
+     */
+    @SuppressWarnings("WeakerAccess")
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return which entry this cache evicts when full
+     */
+    @SuppressWarnings("WeakerAccess")
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    // MAP METHODS
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Whether the cache holds the given key. This does not count as a use of its entry.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    /**
+     * Return the value for the given key, counting as a use of its entry.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public V get(Object key) {
+        final Node<K, V> node = find(key);
+        if (node == null) {
+            return null;
+        }
+        use(node);
+        return node.value;
+    }
+
+    /**
+     * Associate the value with the given key, counting as a use of its entry. If the key is new and the
+     * cache is full, the entry chosen by the {@link Policy} is evicted first.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        final Node<K, V> existing = find(key);
+        if (existing != null) {
+            final V old = existing.value;
+            existing.value = value;
+            use(existing);
+            return old;
+        }
+
+        if (size == capacity) {
+            root = merge(root.left, root.right);
+            size--;
+        }
+        root = insert(root, new Node<>(key, value, firstPriority()));
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final Node<K, V> existing = find(key);
+        if (existing == null) {
+            return null;
+        }
+
+        detach(existing);
+        size--;
+        modCount++;
+        return existing.value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * A view of the entries in ascending key order. Its entries are snapshots, which do not support
+     * {@link Entry#setValue}; its iterator supports removal. Iterating does not count as a use of the
+     * entries.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return TreapCache.this.size();
+            }
+        };
+    }
+
+    // ORDERED QUERIES
+
+    /**
+     * @return the key the cache would evict next, or {@code null} if it is empty
+     */
+    @SuppressWarnings("WeakerAccess")
+    public K eldestKey() {
+        return root == null ? null : root.key;
+    }
+
+    /**
+     * @return the least key in the cache
+     * @throws NoSuchElementException if the cache is empty
+     */
+    @SuppressWarnings("WeakerAccess")
+    public K firstKey() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<K, V> current = root;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.key;
+    }
+
+    /**
+     * @return the greatest key in the cache
+     * @throws NoSuchElementException if the cache is empty
+     */
+    @SuppressWarnings("WeakerAccess")
+    public K lastKey() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<K, V> current = root;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.key;
+    }
+
+    /**
+     * @param key the key to match
+     * @return the least key in the cache greater than or equal to the given key, or {@code null}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public K ceilingKey(K key) {
+        Objects.requireNonNull(key);
+        K result = null;
+        for (Node<K, V> current = root; current != null; ) {
+            final int comparison = key.compareTo(current.key);
+            if (comparison == 0) {
+                return current.key;
+            }
+            if (comparison < 0) {
+                result = current.key;
+                current = current.left;
+            }
+            else {
+                current = current.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param key the key to match
+     * @return the greatest key in the cache less than or equal to the given key, or {@code null}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public K floorKey(K key) {
+        Objects.requireNonNull(key);
+        K result = null;
+        for (Node<K, V> current = root; current != null; ) {
+            final int comparison = key.compareTo(current.key);
+            if (comparison == 0) {
+                return current.key;
+            }
+            if (comparison > 0) {
+                result = current.key;
+                current = current.right;
+            }
+            else {
+                current = current.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collect the entries whose keys are between the given bounds, in ascending key order, in
+     * O(log n + k) expected time for k entries in range. This does not count as a use of the entries.
+     *
+     * @param fromKey       low endpoint of the range
+     * @param fromInclusive whether an entry at the low endpoint is in range
+     * @param toKey         high endpoint of the range
+     * @param toInclusive   whether an entry at the high endpoint is in range
+     * @return snapshots of the entries in range
+     * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public List<Entry<K, V>> range(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+
+        // An in-order walk which only stacks nodes at or above the low endpoint, and stops at the first
+        // node past the high endpoint.
+        final List<Entry<K, V>> result = new ArrayList<>();
+        final List<Node<K, V>> stack = new ArrayList<>();
+        Node<K, V> current = root;
+        while (current != null || !stack.isEmpty()) {
+            while (current != null) {
+                final int low = current.key.compareTo(fromKey);
+                if (low > 0 || fromInclusive && low == 0) {
+                    stack.add(current);
+                    current = current.left;
+                }
+                else {
+                    current = current.right;
+                }
+            }
+            if (stack.isEmpty()) {
+                // Every key left to visit is below the low endpoint.
+                break;
+            }
+
+            final Node<K, V> next = stack.remove(stack.size() - 1);
+            final int high = next.key.compareTo(toKey);
+            if (high > 0 || !toInclusive && high == 0) {
+                break;
+            }
+            result.add(new SimpleImmutableEntry<>(next.key, next.value));
+            current = next.right;
+        }
+        return result;
+    }
+
+    // PRIORITIES
+
+    /**
+     * The priority of a new entry. The high half of the priority holds the epoch of the entry's last use,
+     * or its use count, and the low half a random tie-breaker.
+     */
+    private long firstPriority() {
+        if (policy == Policy.LEAST_RECENTLY_USED) {
+            return recentPriority();
+        }
+        return 1L << 32 | priorities.nextPriority();
+    }
+
+    /**
+     * The priority of an entry used now under {@link Policy#LEAST_RECENTLY_USED}.
+     */
+    private long recentPriority() {
+        if (++clock / epochLength >= EPOCH_LIMIT) {
+            renumber();
+            clock++;
+        }
+        return clock / epochLength << 32 | priorities.nextPriority();
+    }
+
+    /**
+     * Number the epochs held in the tree from zero, keeping their order, and move the clock to the start
+     * of the epoch after them. The tree holds at most {@code capacity} distinct epochs, so they always fit
+     * in the high half of a priority. The order of the priorities is unchanged, so the tree is too.
+     */
+    void renumber() {
+        final List<Node<K, V>> nodes = new ArrayList<>(size);
+        final List<Node<K, V>> stack = new ArrayList<>();
+        if (root != null) {
+            stack.add(root);
+        }
+        while (!stack.isEmpty()) {
+            final Node<K, V> node = stack.remove(stack.size() - 1);
+            nodes.add(node);
+            if (node.left != null) {
+                stack.add(node.left);
+            }
+            if (node.right != null) {
+                stack.add(node.right);
+            }
+        }
+        nodes.sort((a, b) -> Long.compare(a.priority, b.priority));
+
+        long epoch = -1;
+        long previous = -1;
+        for (Node<K, V> node : nodes) {
+            if (node.priority >>> 32 != previous) {
+                previous = node.priority >>> 32;
+                epoch++;
+            }
+            node.priority = epoch << 32 | node.priority & 0xFFFFFFFFL;
+        }
+        clock = (epoch + 1) * epochLength - 1;
+        modCount++;
+    }
+
+    /**
+     * Record a use of an entry. Its priority only ever grows, so it is taken out of the tree and
+     * inserted again further from the root.
+     */
+    private void use(Node<K, V> node) {
+        final long priority;
+        if (policy == Policy.LEAST_RECENTLY_USED) {
+            priority = recentPriority();
+        }
+        else {
+            final long uses = node.priority >>> 32;
+            priority = Math.min(uses + 1, Integer.MAX_VALUE) << 32 | priorities.nextPriority();
+        }
+
+        detach(node);
+        node.priority = priority;
+        root = insert(root, node);
+        modCount++;
+    }
+
+    // TREE OPERATIONS
+
+    /**
+     * Find the node holding the given key.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<K, V> find(Object key) {
+        if (key == null || root == null) {
+            return null;
+        }
+
+        final K k = (K) key;
+        Node<K, V> current = root;
+        while (current != null) {
+            final int comparison = k.compareTo(current.key);
+            if (comparison == 0) {
+                return current;
+            }
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return null;
+    }
+
+    /**
+     * Remove a node from the tree by merging its subtrees in its place, leaving it with no children.
+     */
+    private void detach(Node<K, V> node) {
+        Node<K, V> parent = null;
+        Node<K, V> current = root;
+        while (current != node) {
+            parent = current;
+            current = node.key.compareTo(current.key) < 0 ? current.left : current.right;
+        }
+
+        final Node<K, V> replacement = merge(node.left, node.right);
+        if (parent == null) {
+            root = replacement;
+        }
+        else if (parent.left == node) {
+            parent.left = replacement;
+        }
+        else {
+            parent.right = replacement;
+        }
+        node.left = null;
+        node.right = null;
+    }
+
+    /**
+     * Insert a childless node into a tree which does not hold its key. The node descends past every
+     * node of lower priority, and the subtree it lands on is split around its key to become its
+     * children.
+     *
+     * @return the new root
+     */
+    private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> root, Node<K, V> node) {
+        Node<K, V> parent = null;
+        Node<K, V> current = root;
+        while (current != null && current.priority < node.priority) {
+            parent = current;
+            current = node.key.compareTo(current.key) < 0 ? current.left : current.right;
+        }
+
+        split(current, node);
+        if (parent == null) {
+            return node;
+        }
+        if (node.key.compareTo(parent.key) < 0) {
+            parent.left = node;
+        }
+        else {
+            parent.right = node;
+        }
+        return root;
+    }
+
+    /**
+     * Split a treap which does not hold the given node's key into the keys less than it, which become
+     * the node's left subtree, and those greater, which become its right subtree.
+     *
+     * @see TreapNode#split(TreapNode, Object, java.util.Comparator)
+     */
+    private static <K extends Comparable<K>, V> void split(Node<K, V> tree, Node<K, V> node) {
+        Node<K, V> lessTail = null;
+        Node<K, V> greaterTail = null;
+
+        Node<K, V> current = tree;
+        while (current != null) {
+            if (current.key.compareTo(node.key) < 0) {
+                // current and its left subtree belong to the lesser part.
+                if (lessTail == null) {
+                    node.left = current;
+                }
+                else {
+                    lessTail.right = current;
+                }
+                lessTail = current;
+                current = current.right;
+            }
+            else {
+                if (greaterTail == null) {
+                    node.right = current;
+                }
+                else {
+                    greaterTail.left = current;
+                }
+                greaterTail = current;
+                current = current.left;
+            }
+        }
+
+        if (lessTail != null) {
+            lessTail.right = null;
+        }
+        if (greaterTail != null) {
+            greaterTail.left = null;
+        }
+    }
+
+    /**
+     * Merge two treaps, where every key in {@code left} is less than every key in {@code right}, keeping
+     * the lower priority on top.
+     *
+     * @see TreapNode#merge(TreapNode, TreapNode)
+     */
+    private static <K, V> Node<K, V> merge(Node<K, V> left, Node<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        Node<K, V> root = null;
+        Node<K, V> parent = null;
+        boolean attachRight = false;
+        while (left != null && right != null) {
+            final Node<K, V> chosen;
+            final boolean fromLeft = left.priority < right.priority;
+            if (fromLeft) {
+                chosen = left;
+                left = left.right;
+            }
+            else {
+                chosen = right;
+                right = right.left;
+            }
+
+            if (parent == null) {
+                root = chosen;
+            }
+            else if (attachRight) {
+                parent.right = chosen;
+            }
+            else {
+                parent.left = chosen;
+            }
+            parent = chosen;
+            attachRight = fromLeft;
+        }
+
+        final Node<K, V> rest = left == null ? right : left;
+        if (attachRight) {
+            parent.right = rest;
+        }
+        else {
+            parent.left = rest;
+        }
+        return root;
+    }
+
+    /**
+     * Check that every key is in order and that no node has a lower priority than its parent.
+     *
+     * @return whether the tree is a valid treap
+     */
+    boolean isValid() {
+        return isValid(root, null, null);
+    }
+
+    /**
+     * @return the number of nodes on the longest path from the root
+     */
+    int depth() {
+        int depth = 0;
+        final List<Node<K, V>> nodes = new ArrayList<>();
+        if (root != null) {
+            nodes.add(root);
+        }
+        while (!nodes.isEmpty()) {
+            depth++;
+            final List<Node<K, V>> children = new ArrayList<>();
+            for (Node<K, V> node : nodes) {
+                if (node.left != null) {
+                    children.add(node.left);
+                }
+                if (node.right != null) {
+                    children.add(node.right);
+                }
+            }
+            nodes.clear();
+            nodes.addAll(children);
+        }
+        return depth;
+    }
+
+    private static <K extends Comparable<K>, V> boolean isValid(Node<K, V> node, K low, K high) {
+        if (node == null) {
+            return true;
+        }
+        if (low != null && node.key.compareTo(low) <= 0 || high != null && node.key.compareTo(high) >= 0) {
+            return false;
+        }
+        if (node.left != null && node.left.priority < node.priority
+            || node.right != null && node.right.priority < node.priority) {
+            return false;
+        }
+        return isValid(node.left, low, node.key) && isValid(node.right, node.key, high);
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private V value;
+        /**
+         * A measure of use in the high half, which increases with each use, above a random tie-breaker in
+         * the low half; the root always holds the least.
+         */
+        private long priority;
+        private Node<K, V> left;
+        private Node<K, V> right;
+
+        private Node(K key, V value, long priority) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * An in-order iterator which keeps only the pending left spine on its stack.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        private final List<Node<K, V>> stack = new ArrayList<>();
+        private K lastReturned = null;
+        private int expectedModCount = modCount;
+
+        private EntryIterator() {
+            pushLeftSpine(root);
+        }
+
+        private void pushLeftSpine(Node<K, V> node) {
+            for (Node<K, V> n = node; n != null; n = n.left) {
+                stack.add(n);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException("The Iterator is empty.");
+            }
+
+            final Node<K, V> next = stack.remove(stack.size() - 1);
+            pushLeftSpine(next.right);
+            lastReturned = next.key;
+            return new SimpleImmutableEntry<>(next.key, next.value);
+        }
+
+        /**
+         * Removal relinks the tree, so the stack is rebuilt afterwards from the path to the least
+         * remaining key above the removed one.
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("remove called twice or before next was ever called");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            TreapCache.this.remove(lastReturned);
+            stack.clear();
+            for (Node<K, V> current = root; current != null; ) {
+                if (current.key.compareTo(lastReturned) > 0) {
+                    stack.add(current);
+                    current = current.left;
+                }
+                else {
+                    current = current.right;
+                }
+            }
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package io.tmoore.treap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterators;
+
+/**
+ * Reads and writes {@link Treap}s in a compact binary format: a header holding a magic number, the
+ * format version and the element count, followed by the elements in ascending order, each encoded by
+ * an {@link ElementCodec} relative to the one before.
+ *
+ * <p>Writing streams the elements straight from an in-order traversal of the tree. Reading decodes
+ * them one at a time into the linear-time sorted build, so neither direction holds the elements in an
+ * intermediate collection; files are memory-mapped for reading where they fit in a single mapping.
+ * Priorities are not stored: a loaded {@link Treap} draws fresh ones.
+ */
+public final class TreapIO {
+    private static final int MAGIC = 0x54524550;
+    private static final byte VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TreapIO() {
+    }
+
+    // WRITING
+
+    /**
+     * Write the given {@link Treap} to a file, replacing any existing file. Its {@link Treap#comparator()}
+     * is not stored, so a {@link Treap} ordered by one must be read back with the same comparator.
+     *
+     * @param treap the {@link Treap} to write
+     * @param codec encodes the elements
+     * @param path  the file to write
+     * @throws IOException if writing fails
+     */
+    public static <T> void write(Treap<T> treap, ElementCodec<T> codec, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(treap, codec, out);
+        }
+    }
+
+    /**
+     * Write the given {@link Treap} to a stream, which is flushed but not closed. Its
+     * {@link Treap#comparator()} is not stored, so a {@link Treap} ordered by one must be read back with
+     * the same comparator.
+     *
+     * @param treap the {@link Treap} to write
+     * @param codec encodes the elements
+     * @param out   the destination
+     * @throws IOException if writing fails
+     */
+    public static <T> void write(Treap<T> treap, ElementCodec<T> codec, OutputStream out) throws IOException {
+        Objects.requireNonNull(treap);
+        Objects.requireNonNull(codec);
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(treap.size());
+
+        final Iterator<T> inOrder = Spliterators.iterator(treap.spliterator());
+        T previous = null;
+        while (inOrder.hasNext()) {
+            final T value = inOrder.next();
+            codec.write(previous, value, data);
+            previous = value;
+        }
+        data.flush();
+    }
+
+    // READING
+
+    /**
+     * Read a naturally ordered {@link Treap} from a file written by
+     * {@link #write(Treap, ElementCodec, Path)}.
+     *
+     * @param codec decodes the elements
+     * @param path  the file to read
+     * @return a new {@link Treap} holding the file's elements
+     * @throws IOException if reading fails or the file is malformed
+     */
+    public static <T extends Comparable<T>> Treap<T> read(ElementCodec<T> codec, Path path) throws IOException {
+        return read(codec, null, path, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Read a naturally ordered {@link Treap} from a file written by
+     * {@link #write(Treap, ElementCodec, Path)}.
+     *
+     * @param codec      decodes the elements
+     * @param path       the file to read
+     * @param priorities the source of the new {@link Treap}'s node priorities
+     * @return a new {@link Treap} holding the file's elements
+     * @throws IOException if reading fails or the file is malformed
+     * @see #read(ElementCodec, Comparator, Path, PriorityGenerator)
+     */
+    public static <T extends Comparable<T>> Treap<T> read(ElementCodec<T> codec, Path path,
+                                                          PriorityGenerator priorities) throws IOException {
+        return read(codec, null, path, priorities);
+    }
+
+    /**
+     * Read a {@link Treap} ordered by the given comparator from a file written by
+     * {@link #write(Treap, ElementCodec, Path)}.
+     *
+     * @param codec      decodes the elements
+     * @param comparator the ordering the {@link Treap} was written in, or {@code null} for natural ordering
+     * @param path       the file to read
+     * @return a new {@link Treap} holding the file's elements
+     * @throws IOException if reading fails, the file is malformed, or its elements are not in the order
+     *                     of the comparator
+     */
+    public static <T> Treap<T> read(ElementCodec<T> codec, Comparator<? super T> comparator, Path path)
+            throws IOException {
+        return read(codec, comparator, path, PriorityGenerator.threadLocal());
+    }
+
+    /**
+     * Read a {@link Treap} ordered by the given comparator from a file written by
+     * {@link #write(Treap, ElementCodec, Path)}, memory-mapping it unless it is too large for a single
+     * mapping. The elements are checked to be strictly ascending in that order as they are decoded.
+     *
+     * @param codec      decodes the elements
+     * @param comparator the ordering the {@link Treap} was written in, or {@code null} for natural ordering
+     * @param path       the file to read
+     * @param priorities the source of the new {@link Treap}'s node priorities
+     * @return a new {@link Treap} holding the file's elements
+     * @throws IOException if reading fails, the file is malformed, or its elements are not in the order
+     *                     of the comparator
+     */
+    public static <T> Treap<T> read(ElementCodec<T> codec, Comparator<? super T> comparator, Path path,
+                                    PriorityGenerator priorities) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size <= Integer.MAX_VALUE) {
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return load(codec, comparator, new ByteBufferInput(mapped), priorities);
+            }
+        }
+
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(codec, comparator, in, priorities);
+        }
+    }
+
+    /**
+     * Read a naturally ordered {@link Treap} from a stream written by
+     * {@link #write(Treap, ElementCodec, OutputStream)}. The stream is not closed, but may have been read
+     * beyond the end of the {@link Treap}.
+     *
+     * @param codec      decodes the elements
+     * @param in         the source
+     * @param priorities the source of the new {@link Treap}'s node priorities
+     * @return a new {@link Treap} holding the stream's elements
+     * @throws IOException if reading fails or the data is malformed
+     */
+    public static <T extends Comparable<T>> Treap<T> read(ElementCodec<T> codec, InputStream in,
+                                                          PriorityGenerator priorities) throws IOException {
+        return read(codec, null, in, priorities);
+    }
+
+    /**
+     * Read a {@link Treap} ordered by the given comparator from a stream written by
+     * {@link #write(Treap, ElementCodec, OutputStream)}. The stream is not closed, but may have been read
+     * beyond the end of the {@link Treap}.
+     *
+     * @param codec      decodes the elements
+     * @param comparator the ordering the {@link Treap} was written in, or {@code null} for natural ordering
+     * @param in         the source
+     * @param priorities the source of the new {@link Treap}'s node priorities
+     * @return a new {@link Treap} holding the stream's elements
+     * @throws IOException if reading fails, the data is malformed, or its elements are not in the order
+     *                     of the comparator
+     */
+    public static <T> Treap<T> read(ElementCodec<T> codec, Comparator<? super T> comparator, InputStream in,
+                                    PriorityGenerator priorities) throws IOException {
+        return load(codec, comparator, new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE)), priorities);
+    }
+
+    private static <T> Treap<T> load(ElementCodec<T> codec, Comparator<? super T> comparator, DataInput in,
+                                     PriorityGenerator priorities) throws IOException {
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(priorities);
+        if (in.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a serialized Treap");
+        }
+        final byte version = in.readByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported format version " + version);
+        }
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new StreamCorruptedException("Negative element count " + count);
+        }
+
+        final Comparator<? super T> order = comparator == null ? TreapNode.NATURAL_ORDER : comparator;
+        try {
+            final TreapNode<T> root = TreapNode.build(() -> new Decoder<>(codec, order, in, count), priorities);
+            return new Treap<>(root, comparator, priorities);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Decodes a known number of elements on demand, checking that they are strictly ascending in the
+     * given order, as the sorted build requires.
+     */
+    private static final class Decoder<T> implements Iterator<T> {
+        private final ElementCodec<T> codec;
+        private final Comparator<? super T> order;
+        private final DataInput in;
+        private int remaining;
+        private T previous = null;
+
+        private Decoder(ElementCodec<T> codec, Comparator<? super T> order, DataInput in, int count) {
+            this.codec = codec;
+            this.order = order;
+            this.in = in;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException("The Iterator is empty.");
+            }
+
+            try {
+                final T value = Objects.requireNonNull(codec.read(previous, in));
+                if (previous != null && order.compare(previous, value) >= 0) {
+                    throw new StreamCorruptedException("Elements are not in strictly ascending order");
+                }
+                previous = value;
+                remaining--;
+                return value;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A {@link DataInput} reading from a {@link ByteBuffer}, such as a memory-mapped file, in the same
+     * big-endian format as {@link DataInputStream}.
+     */
+    private static final class ByteBufferInput implements DataInput {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            if (buffer.remaining() < len) {
+                throw new EOFException();
+            }
+            buffer.get(b, off, len);
+        }
+
+        @Override
+        public int skipBytes(int n) {
+            final int skipped = Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            try {
+                return buffer.get();
+            }
+            catch (BufferUnderflowException e) {
+                throw new EOFException();
+            }
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            try {
+                return buffer.getShort();
+            }
+            catch (BufferUnderflowException e) {
+                throw new EOFException();
+            }
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            return readShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            return (char) readShort();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            try {
+                return buffer.getInt();
+            }
+            catch (BufferUnderflowException e) {
+                throw new EOFException();
+            }
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            try {
+                return buffer.getLong();
+            }
+            catch (BufferUnderflowException e) {
+                throw new EOFException();
+            }
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        /**
+         * Read a line as {@link DataInputStream#readLine()} does: each byte becomes the character with the
+         * same low eight bits, and the line ends at {@code \n}, {@code \r}, {@code \r\n} or the end of
+         * the buffer.
+         *
+         * @return the line without its terminator, or {@code null} if the buffer is exhausted
+         */
+        @Override
+        public String readLine() {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+
+            final StringBuilder line = new StringBuilder();
+            while (buffer.hasRemaining()) {
+                final char c = (char) (buffer.get() & 0xFF);
+                if (c == '\n') {
+                    break;
+                }
+                if (c == '\r') {
+                    if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                        buffer.get();
+                    }
+                    break;
+                }
+                line.append(c);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+}
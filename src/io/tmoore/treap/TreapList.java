@@ -0,0 +1,266 @@
+package io.tmoore.treap;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A {@link List} held in a treap whose nodes are ordered by position rather than by value: a node's
+ * index is the number of nodes before it, which each node's subtree size makes available on the way
+ * down. Inserting, removing, reading or replacing an element anywhere in the list takes O(log n)
+ * expected time, as does cutting a range out of it or splicing another {@link TreapList} into it,
+ * since those split and merge trees rather than shift elements.
+ *
+ * <p>Null elements are not permitted.
+ */
+public class TreapList<E> extends AbstractList<E> {
+    private TreapNode<E> root;
+    private final PriorityGenerator priorities;
+
+    // CONSTRUCTORS
+
+    @SuppressWarnings("WeakerAccess")
+    public TreapList() {
+        this(PriorityGenerator.threadLocal());
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public TreapList(PriorityGenerator priorities) {
+        this.priorities = Objects.requireNonNull(priorities);
+    }
+
+    /**
+     * Create a {@link TreapList} holding the elements of the given collection in iteration order,
+     * built in linear time.
+     *
+     * @param fromCollection the initial elements
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapList(Collection<? extends E> fromCollection) {
+        this(PriorityGenerator.threadLocal());
+        root = TreapNode.build(fromCollection, priorities);
+    }
+
+    private TreapList(TreapNode<E> root, PriorityGenerator priorities) {
+        this.root = root;
+        this.priorities = priorities;
+    }
+
+    // LIST METHODS
+
+    @Override
+    public int size() {
+        return TreapNode.size(root);
+    }
+
+    @Override
+    public E get(int index) {
+        Objects.checkIndex(index, size());
+        return root.get(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        Objects.checkIndex(index, size());
+        final TreapNode<E> node = root.nodeAt(index);
+        final E old = node.getValue();
+        node.setValue(element);
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        Objects.checkIndex(index, size() + 1);
+        final TreapNode<E> node = new TreapNode<>(element, priorities.nextPriority());
+        final TreapNode.Split<E> split = TreapNode.splitAt(root, index);
+        root = TreapNode.merge(TreapNode.merge(split.less, node), split.greater);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        Objects.checkIndex(index, size());
+        final TreapNode.Split<E> split = TreapNode.splitAt(root, index);
+        final TreapNode.Split<E> rest = TreapNode.splitAt(split.greater, 1);
+        root = TreapNode.merge(split.less, rest.greater);
+        modCount++;
+        return rest.less.getValue();
+    }
+
+    /**
+     * Insert the elements of the given collection at the given position. They are built into a treap
+     * in linear time and spliced in, so this takes O(m + log n) expected time for m new elements.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+        Objects.checkIndex(index, size() + 1);
+        if (c.isEmpty()) {
+            return false;
+        }
+        splice(index, new TreapList<>(TreapNode.build(c, priorities), priorities));
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size(), c);
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    /**
+     * Remove the elements in {@code [fromIndex, toIndex)} by splitting them out, in O(log n) expected
+     * time. This also makes {@code subList(from, to).clear()} O(log n).
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        cut(fromIndex, toIndex);
+    }
+
+    // SPLICING
+
+    /**
+     * Remove the elements in {@code [fromIndex, toIndex)} and return them as a new {@link TreapList}.
+     * The nodes are moved rather than copied, so this takes O(log n) expected time.
+     *
+     * @param fromIndex index of the first element to remove
+     * @param toIndex   index after the last element to remove
+     * @return a {@link TreapList} holding the removed elements, in order
+     * @throws IndexOutOfBoundsException if the range is out of bounds or {@code fromIndex > toIndex}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapList<E> cut(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        final TreapNode.Split<E> before = TreapNode.splitAt(root, fromIndex);
+        final TreapNode.Split<E> range = TreapNode.splitAt(before.greater, toIndex - fromIndex);
+        root = TreapNode.merge(before.less, range.greater);
+        modCount++;
+        return new TreapList<>(range.less, priorities);
+    }
+
+    /**
+     * Move every element of the given {@link TreapList} into this one, starting at the given position,
+     * and leave {@code other} empty. The nodes are moved rather than copied, so this takes O(log n)
+     * expected time.
+     *
+     * @param index position at which to insert the first element of {@code other}
+     * @param other the {@link TreapList} to absorb
+     * @throws IndexOutOfBoundsException if the index is out of {@code [0, size()]}
+     * @throws IllegalArgumentException  if {@code other} is this list
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void splice(int index, TreapList<E> other) {
+        Objects.checkIndex(index, size() + 1);
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot splice a TreapList into itself");
+        }
+        final TreapNode.Split<E> split = TreapNode.splitAt(root, index);
+        root = TreapNode.merge(TreapNode.merge(split.less, other.root), split.greater);
+        other.root = null;
+        other.modCount++;
+        modCount++;
+    }
+
+    // ITERATION
+
+    /**
+     * Traverses the list in order with a stack of pending ancestors, so each step takes O(1) amortized
+     * time rather than the O(log n) of an indexed {@link #get(int)}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new TreapListIterator();
+    }
+
+    private class TreapListIterator implements Iterator<E> {
+        private final List<TreapNode<E>> stack = new ArrayList<>();
+        private int cursor = 0;
+        private boolean canRemove = false;
+        private int expectedModCount = modCount;
+
+        private TreapListIterator() {
+            seek(0);
+        }
+
+        /**
+         * Rebuild the stack so that its top is the node at the given position: the path to it, less the
+         * ancestors it lies to the right of, which have already been visited.
+         */
+        private void seek(int index) {
+            stack.clear();
+            TreapNode<E> current = root;
+            while (current != null) {
+                final int leftSize = TreapNode.size(current.getLeft());
+                if (index < leftSize) {
+                    stack.add(current);
+                    current = current.getLeft();
+                }
+                else if (index == leftSize) {
+                    stack.add(current);
+                    return;
+                }
+                else {
+                    index -= leftSize + 1;
+                    current = current.getRight();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException("The Iterator is empty.");
+            }
+
+            final TreapNode<E> next = stack.remove(stack.size() - 1);
+            for (TreapNode<E> n = next.getRight(); n != null; n = n.getLeft()) {
+                stack.add(n);
+            }
+            cursor++;
+            canRemove = true;
+            return next.getValue();
+        }
+
+        /**
+         * Removal relinks the tree, so the stack is rebuilt afterwards by seeking to the element which
+         * now holds the cursor's position.
+         */
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException("remove called twice or before next was ever called");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            TreapList.this.remove(--cursor);
+            seek(cursor);
+            canRemove = false;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package io.tmoore.treap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * A sorted map held in a treap, which can apply a transform to every value in a key range in O(log n)
+ * expected time. The range is split out of the tree, the transform is recorded as a pending tag on the
+ * root of that subtree, and the tree is merged back together. A tag is only pushed down to a node's
+ * children, and applied to its own value, when a later operation visits that node; reads and iteration
+ * therefore always see the transformed values, while the cost of the update is paid lazily, and only
+ * for the entries that are actually visited.
+ *
+ * <p>Pending transforms on the same subtree are queued in O(1), so a subtree which is not visited for a
+ * while may hold a long sequence of them; they are applied one after another, without nesting calls,
+ * when it is next visited. Reads push tags down too, so this map must not be read concurrently with any
+ * other access.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class TreapMap<K extends Comparable<K>, V> extends AbstractMap<K, V> {
+    private Node<K, V> root;
+    private final PriorityGenerator priorities;
+    private int modCount = 0;
+
+    // CONSTRUCTORS
+
+    @SuppressWarnings("WeakerAccess")
+    public TreapMap() {
+        this(PriorityGenerator.threadLocal());
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public TreapMap(PriorityGenerator priorities) {
+        this.priorities = Objects.requireNonNull(priorities);
+    }
+
+    // MAP METHODS
+
+    @Override
+    public int size() {
+        return Node.size(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        final Node<K, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        final Node<K, V> existing = find(key);
+        if (existing != null) {
+            final V old = existing.value;
+            existing.value = value;
+            return old;
+        }
+
+        final Split<K, V> split = split(root, key, false);
+        root = merge(merge(split.less, new Node<>(key, value, priorities.nextPriority())), split.rest);
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final Node<K, V> existing = find(key);
+        if (existing == null) {
+            return null;
+        }
+
+        final Split<K, V> below = split(root, existing.key, false);
+        final Split<K, V> at = split(below.rest, existing.key, true);
+        root = merge(below.less, at.rest);
+        modCount++;
+        return existing.value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    /**
+     * A view of the entries in ascending key order. Its entries are snapshots, which do not support
+     * {@link Entry#setValue}; its iterator supports removal.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return TreapMap.this.size();
+            }
+        };
+    }
+
+    // RANGE UPDATES
+
+    /**
+     * Replace the value of every entry whose key is in {@code [fromKey, toKey]} with the result of
+     * applying the given function to it.
+     *
+     * @param fromKey   the least key to update
+     * @param toKey     the greatest key to update
+     * @param transform the function to apply to each value in range
+     * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey}
+     * @see #updateRange(Comparable, boolean, Comparable, boolean, UnaryOperator)
+     */
+    public void updateRange(K fromKey, K toKey, UnaryOperator<V> transform) {
+        updateRange(fromKey, true, toKey, true, transform);
+    }
+
+    /**
+     * Replace the value of every entry whose key is between the given bounds with the result of applying
+     * the given function to it, in O(log n) expected time however many entries are in range. The function
+     * is applied lazily, when each entry is next visited, and may be applied to a value composed with
+     * later transforms on an overlapping range, so it should be free of side effects.
+     *
+     * @param fromKey       low endpoint of the range
+     * @param fromInclusive whether an entry at the low endpoint is in range
+     * @param toKey         high endpoint of the range
+     * @param toInclusive   whether an entry at the high endpoint is in range
+     * @param transform     the function to apply to each value in range
+     * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey}
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void updateRange(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive,
+                            UnaryOperator<V> transform) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        Objects.requireNonNull(transform);
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+
+        final Split<K, V> below = split(root, fromKey, !fromInclusive);
+        final Split<K, V> range = split(below.rest, toKey, toInclusive);
+        if (range.less != null) {
+            range.less.tag(Tag.of(transform));
+        }
+        root = merge(merge(below.less, range.less), range.rest);
+        modCount++;
+    }
+
+    // TREE OPERATIONS
+
+    /**
+     * Find the node holding the given key, pushing pending transforms down the search path so that its
+     * value is current.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<K, V> find(Object key) {
+        if (key == null || root == null) {
+            return null;
+        }
+
+        final K k = (K) key;
+        Node<K, V> current = root;
+        while (current != null) {
+            current.push();
+            final int comparison = k.compareTo(current.key);
+            if (comparison == 0) {
+                return current;
+            }
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return null;
+    }
+
+    /**
+     * The two parts of a treap produced by {@link #split}.
+     */
+    private static final class Split<K, V> {
+        private Node<K, V> less;
+        private Node<K, V> rest;
+    }
+
+    /**
+     * Split a treap so that keys less than the given key, or also equal to it if {@code inclusive},
+     * are in {@link Split#less} and the others are in {@link Split#rest}. Pending transforms are pushed
+     * off every node whose children change.
+     *
+     * @see TreapNode#split(TreapNode, Object, java.util.Comparator)
+     */
+    private static <K extends Comparable<K>, V> Split<K, V> split(Node<K, V> node, K key, boolean inclusive) {
+        final Split<K, V> result = new Split<>();
+        final Deque<Node<K, V>> touched = new ArrayDeque<>();
+        Node<K, V> lessTail = null;
+        Node<K, V> restTail = null;
+
+        Node<K, V> current = node;
+        while (current != null) {
+            current.push();
+            touched.push(current);
+            final int comparison = current.key.compareTo(key);
+            if (comparison < 0 || inclusive && comparison == 0) {
+                // current and its left subtree belong to the lesser part.
+                if (lessTail == null) {
+                    result.less = current;
+                }
+                else {
+                    lessTail.right = current;
+                }
+                lessTail = current;
+                current = current.right;
+            }
+            else {
+                if (restTail == null) {
+                    result.rest = current;
+                }
+                else {
+                    restTail.left = current;
+                }
+                restTail = current;
+                current = current.left;
+            }
+        }
+
+        if (lessTail != null) {
+            lessTail.right = null;
+        }
+        if (restTail != null) {
+            restTail.left = null;
+        }
+        while (!touched.isEmpty()) {
+            touched.pop().updateSize();
+        }
+        return result;
+    }
+
+    /**
+     * Merge two treaps, where every key in {@code left} is less than every key in {@code right}. Pending
+     * transforms are pushed off every node whose children change.
+     *
+     * @see TreapNode#merge(TreapNode, TreapNode)
+     */
+    private static <K, V> Node<K, V> merge(Node<K, V> left, Node<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        final Deque<Node<K, V>> touched = new ArrayDeque<>();
+        Node<K, V> root = null;
+        Node<K, V> parent = null;
+        boolean attachRight = false;
+        while (left != null && right != null) {
+            final Node<K, V> chosen;
+            final boolean fromLeft = left.priority > right.priority;
+            if (fromLeft) {
+                chosen = left;
+                chosen.push();
+                left = left.right;
+            }
+            else {
+                chosen = right;
+                chosen.push();
+                right = right.left;
+            }
+            touched.push(chosen);
+
+            if (parent == null) {
+                root = chosen;
+            }
+            else if (attachRight) {
+                parent.right = chosen;
+            }
+            else {
+                parent.left = chosen;
+            }
+            parent = chosen;
+            attachRight = fromLeft;
+        }
+
+        final Node<K, V> rest = left == null ? right : left;
+        if (attachRight) {
+            parent.right = rest;
+        }
+        else {
+            parent.left = rest;
+        }
+        while (!touched.isEmpty()) {
+            touched.pop().updateSize();
+        }
+        return root;
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private V value;
+        private final int priority;
+        private int size = 1;
+        private Node<K, V> left;
+        private Node<K, V> right;
+
+        /**
+         * The transforms still to be applied to this node's value and to everything below it, or
+         * {@code null}.
+         */
+        private Tag<V> pending;
+
+        private Node(K key, V value, int priority) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+        }
+
+        private static int size(Node<?, ?> node) {
+            return node == null ? 0 : node.size;
+        }
+
+        private void updateSize() {
+            size = 1 + size(left) + size(right);
+        }
+
+        /**
+         * Record transforms of this whole subtree, after any already pending.
+         */
+        private void tag(Tag<V> transforms) {
+            pending = Tag.concat(pending, transforms);
+        }
+
+        /**
+         * Apply the pending transforms to this node's value, and hand them on to the children.
+         */
+        private void push() {
+            if (pending == null) {
+                return;
+            }
+            value = pending.apply(value);
+            if (left != null) {
+                left.tag(pending);
+            }
+            if (right != null) {
+                right.tag(pending);
+            }
+            pending = null;
+        }
+    }
+
+    /**
+     * A sequence of transforms, applied in order. Sequences are concatenated by sharing both halves,
+     * in O(1), and applied by walking them with an explicit stack, so however many range updates pile up
+     * on a subtree before it is next visited, neither step nests calls.
+     */
+    private static final class Tag<V> {
+        /**
+         * The transform of a single update, or {@code null} if this is a concatenation.
+         */
+        private final UnaryOperator<V> transform;
+        private final Tag<V> first;
+        private final Tag<V> then;
+
+        private Tag(UnaryOperator<V> transform, Tag<V> first, Tag<V> then) {
+            this.transform = transform;
+            this.first = first;
+            this.then = then;
+        }
+
+        private static <V> Tag<V> of(UnaryOperator<V> transform) {
+            return new Tag<>(transform, null, null);
+        }
+
+        private static <V> Tag<V> concat(Tag<V> first, Tag<V> then) {
+            return first == null ? then : new Tag<>(null, first, then);
+        }
+
+        private V apply(V value) {
+            final Deque<Tag<V>> stack = new ArrayDeque<>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                final Tag<V> tag = stack.pop();
+                if (tag.transform != null) {
+                    value = tag.transform.apply(value);
+                }
+                else {
+                    stack.push(tag.then);
+                    stack.push(tag.first);
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * An in-order iterator which keeps only the pending left spine on its stack, pushing transforms down
+     * to each node before it is stacked, so that every value it returns is current.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        private final List<Node<K, V>> stack = new ArrayList<>();
+        private K lastReturned = null;
+        private int expectedModCount = modCount;
+
+        private EntryIterator() {
+            pushLeftSpine(root);
+        }
+
+        private void pushLeftSpine(Node<K, V> node) {
+            for (Node<K, V> n = node; n != null; n = n.left) {
+                n.push();
+                stack.add(n);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException("The Iterator is empty.");
+            }
+
+            final Node<K, V> next = stack.remove(stack.size() - 1);
+            pushLeftSpine(next.right);
+            lastReturned = next.key;
+            return new SimpleImmutableEntry<>(next.key, next.value);
+        }
+
+        /**
+         * Removal relinks the tree, so the stack is rebuilt afterwards from the path to the least
+         * remaining key above the removed one.
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("remove called twice or before next was ever called");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            TreapMap.this.remove(lastReturned);
+            stack.clear();
+            for (Node<K, V> current = root; current != null; ) {
+                current.push();
+                if (current.key.compareTo(lastReturned) > 0) {
+                    stack.add(current);
+                    current = current.left;
+                }
+                else {
+                    current = current.right;
+                }
+            }
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package io.tmoore.treap;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing how the {@link Treap}s it is attached to are searched and reshaped: how many nodes
+ * each lookup, insertion and removal visits, how many comparisons and rotations it makes, and whether
+ * those paths are longer than a randomly shaped tree of the same size would give.
+ *
+ * <p>Metrics are opt-in through {@link Treap#setMetrics(TreapMetrics)}; a {@link Treap} without them
+ * pays nothing beyond a null check per operation. Operations which take at least the configured slow
+ * threshold are also reported to JDK Flight Recorder as {@code io.tmoore.treap.SlowOperation} events.
+ *
+ * <p>The counters may be read from any thread while the {@link Treap} is in use, and one instance may
+ * be shared between several {@link Treap}s to see them as a whole.
+ */
+public final class TreapMetrics {
+    /**
+     * The operations which are measured.
+     */
+    public enum Operation {
+        CONTAINS, ADD, REMOVE
+    }
+
+    /**
+     * The {@link #getSkew() skew} above which the tree is considered degenerate. A tree with random
+     * priorities stays close to 1; sorted keys with poor priorities grow linearly with the size.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final double SKEW_THRESHOLD = 2.0;
+
+    private final long slowThresholdNanos;
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder pathLength = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final LongAdder slowOperations = new LongAdder();
+    private final LongAccumulator maxPathLength = new LongAccumulator(Math::max, 0);
+    private final DoubleAdder relativePathLength = new DoubleAdder();
+
+    // CONSTRUCTORS
+
+    /**
+     * Create metrics which report operations taking a millisecond or more as slow.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapMetrics() {
+        this(Duration.ofMillis(1));
+    }
+
+    /**
+     * Create metrics which report operations taking at least the given time as slow.
+     *
+     * @param slowThreshold the least duration of a slow operation
+     */
+    @SuppressWarnings("WeakerAccess")
+    public TreapMetrics(Duration slowThreshold) {
+        if (slowThreshold.isNegative()) {
+            throw new IllegalArgumentException("Negative slow threshold: " + slowThreshold);
+        }
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    /**
+     * The shape of a single operation, filled in by {@link TreapNode} as it walks the tree. Each measured
+     * operation has its own, so that concurrent lookups never write to the same one.
+     */
+    static final class Trace {
+        int pathLength;
+        int comparisons;
+        int rotations;
+    }
+
+    /**
+     * Add a finished operation to the counters, and report it to Flight Recorder if it was slow.
+     *
+     * @param operation  the kind of operation
+     * @param trace      what the operation did
+     * @param size       the size of the tree it ran on
+     * @param startNanos the {@link System#nanoTime()} at which it started
+     */
+    void record(Operation operation, Trace trace, int size, long startNanos) {
+        final long duration = System.nanoTime() - startNanos;
+        operations.increment();
+        comparisons.add(trace.comparisons);
+        pathLength.add(trace.pathLength);
+        rotations.add(trace.rotations);
+        maxPathLength.accumulate(trace.pathLength);
+        relativePathLength.add(trace.pathLength / expectedPathLength(size));
+
+        if (duration >= slowThresholdNanos) {
+            slowOperations.increment();
+            final SlowOperationEvent event = new SlowOperationEvent();
+            if (event.isEnabled()) {
+                event.operation = operation.name();
+                event.size = size;
+                event.pathLength = trace.pathLength;
+                event.comparisons = trace.comparisons;
+                event.rotations = trace.rotations;
+                event.elapsed = duration;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * The expected number of nodes on a search path in a treap of the given size with random
+     * priorities, which is about {@code 2 ln n}, counting the root.
+     */
+    private static double expectedPathLength(int size) {
+        return 1 + 2 * Math.log(Math.max(size, 1));
+    }
+
+    // ACCESSORS
+
+    /**
+     * @return the number of operations measured
+     */
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    /**
+     * @return the total number of element comparisons
+     */
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    /**
+     * @return the total number of rotations made to restore the heap order
+     */
+    public long getRotations() {
+        return rotations.sum();
+    }
+
+    /**
+     * @return the total number of nodes visited by searches
+     */
+    public long getPathLength() {
+        return pathLength.sum();
+    }
+
+    /**
+     * @return the most nodes visited by a single search
+     */
+    public long getMaxPathLength() {
+        return maxPathLength.get();
+    }
+
+    /**
+     * @return the number of operations which took at least the slow threshold
+     */
+    public long getSlowOperations() {
+        return slowOperations.sum();
+    }
+
+    /**
+     * @return the mean number of comparisons per operation, or 0 if there have been none
+     */
+    public double getMeanComparisons() {
+        final long count = operations.sum();
+        return count == 0 ? 0 : (double) comparisons.sum() / count;
+    }
+
+    /**
+     * @return the mean number of nodes visited per operation, or 0 if there have been none
+     */
+    public double getMeanPathLength() {
+        final long count = operations.sum();
+        return count == 0 ? 0 : (double) pathLength.sum() / count;
+    }
+
+    /**
+     * The mean ratio of each operation's path length to that expected for a randomly shaped tree of the
+     * size it ran on. Values near or below 1 mean the tree is as balanced as a treap should be; a
+     * growing value points at priorities that are not random, or keys that defeat them.
+     *
+     * @return the mean relative path length, or 0 if there have been no operations
+     */
+    public double getSkew() {
+        final long count = operations.sum();
+        return count == 0 ? 0 : relativePathLength.sum() / count;
+    }
+
+    /**
+     * @return whether the {@link #getSkew() skew} is above {@link #SKEW_THRESHOLD}
+     */
+    public boolean isSkewed() {
+        return getSkew() > SKEW_THRESHOLD;
+    }
+
+    /**
+     * Set every counter back to zero. Operations running at the same time may be partly counted.
+     */
+    public void reset() {
+        operations.reset();
+        comparisons.reset();
+        pathLength.reset();
+        rotations.reset();
+        slowOperations.reset();
+        maxPathLength.reset();
+        relativePathLength.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TreapMetrics[operations=%d, meanComparisons=%.2f, meanPathLength=%.2f, "
+                             + "maxPathLength=%d, rotations=%d, skew=%.2f, slowOperations=%d]",
+                             getOperations(), getMeanComparisons(), getMeanPathLength(),
+                             getMaxPathLength(), getRotations(), getSkew(), getSlowOperations());
+    }
+}
@@ -1,15 +1,17 @@
 package io.tmoore.treap;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
-import java.util.Random;
-import java.util.function.BiFunction;
+import java.util.Queue;
+import java.util.concurrent.RecursiveTask;
 
-class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
+class TreapNode<T> implements Comparable<TreapNode<T>> {
     static final String NULL_NODE_STRING = "----";
 
-    private static final Random random = new Random();
-
     private TreapNode<T> left;
     private TreapNode<T> right;
 
@@ -31,7 +33,7 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
         return right;
     }
 
-    private final T value;
+    private T value;
 
     /**
      * Get the value held by this {@link TreapNode}.
@@ -42,8 +44,36 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
         return value;
     }
 
+    /**
+     * Replace the value held by this {@link TreapNode}. Only positional trees may do this, since the
+     * node keeps its place in the tree whatever the new value.
+     *
+     * @param value the new value
+     */
+    void setValue(T value) {
+        this.value = Objects.requireNonNull(value);
+    }
+
+    /**
+     * Replace one child of this {@link TreapNode}, leaving its cached size to be fixed by
+     * {@link #updateSize()}.
+     *
+     * @param child       the current left or right child
+     * @param replacement the new child in its place, may be {@code null}
+     */
+    void replaceChild(TreapNode<T> child, TreapNode<T> replacement) {
+        if (left == child) {
+            left = replacement;
+        }
+        else {
+            right = replacement;
+        }
+    }
+
     private int priority;
 
+    private int size;
+
     /**
      * The heap priority of the node in the tree. Always decreasing with depth.
      *
@@ -53,16 +83,13 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
         return priority;
     }
 
-    private TreapNode(T value, TreapNode<T> right, TreapNode<T> left) {
-        this(value, random.nextInt(Integer.MAX_VALUE - 2) + 1, right, left);
-    }
-
     TreapNode(T value, int priority, TreapNode<T> right, TreapNode<T> left) {
         Objects.requireNonNull(value);
         this.value = value;
         this.priority = priority;
         this.left = left;
         this.right = right;
+        this.size = 1 + size(left) + size(right);
     }
 
     TreapNode(T value, int priority) {
@@ -70,83 +97,138 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
     }
 
     TreapNode(T value) {
-        this(value, null, null);
-    }
-
-    int size() {
-        return aggregateDepth(Integer::sum);
+        this(value, PriorityGenerator.threadLocal().nextPriority());
     }
 
     /**
-     * Collect the contents of this and all child {@link TreapNode}s into the given list.
+     * The number of elements in the subtree rooted at this {@link TreapNode}, including itself.
      *
-     * @param list to collect contents into
+     * @return the subtree element count
      */
-     void addContentsToList(List<T> list) {
-        if (left != null) {
-            left.addContentsToList(list);
-        }
-
-        list.add(value);
+    int size() {
+        return size;
+    }
 
-        if (right != null) {
-            right.addContentsToList(list);
-        }
+    static int size(TreapNode<?> node) {
+        return node == null ? 0 : node.size;
     }
 
-    boolean add(TreapNode<T> newNode) {
-        if (newNode.value.equals(value)) {
-            return false;
-        }
+    /**
+     * The natural ordering of values, for trees created without a {@link Comparator}. {@link TreapNode}
+     * itself places no bound on its values, so that positional trees such as {@link TreapList} can use
+     * it too; every tree which is ordered by value passes its ordering to each search instead.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final Comparator<Object> NATURAL_ORDER = (a, b) -> ((Comparable) a).compareTo(b);
 
+    /**
+     * Recompute the cached subtree size from the (already up-to-date) children. Every change to a node's
+     * children is followed by a call to this, bottom-up, so subclasses which cache other facts about
+     * their subtree can refresh them here too.
+     */
+    void updateSize() {
+        size = 1 + size(left) + size(right);
+    }
 
-        if (newNode.value.compareTo(value) < 0) {
-            // Add to the left side
-            if (left == null) {
-                left = newNode;
-                return true;
-            } else {
-                return left.add(newNode);
-            }
-        }
-        else {
-            // Add to the right side
-            if (right == null) {
-                right = newNode;
-                return true;
-            } else {
-                return right.add(newNode);
+    /**
+     * Collect the contents of this and all child {@link TreapNode}s into the given list, in ascending
+     * order.
+     *
+     * @param list to collect contents into
+     */
+    void addContentsToList(List<T> list) {
+        final Deque<TreapNode<T>> stack = new ArrayDeque<>();
+        TreapNode<T> current = this;
+        while (current != null || !stack.isEmpty()) {
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
             }
+            current = stack.pop();
+            list.add(current.value);
+            current = current.right;
         }
     }
 
-    TreapNode<T> balance() {
-        // Assume 1 change happens at a time, so both branches can't be out of balance.
-        if (left == null && right == null) {
-            return this;
-        }
+    /**
+     * Insert the given node into this subtree, restoring the heap property with rotations along the
+     * insertion path only. Each level is visited with a single three-way comparison.
+     *
+     * @param newNode the node to insert
+     * @param path    scratch stack for the insertion path, which is left empty again afterwards
+     * @param order   the ordering of the tree
+     * @param trace   receives the shape of the insertion, may be {@code null}
+     * @return the new local root node, which is {@code this} unless a rotation lifted a child above it.
+     * The subtree size is unchanged if an equal value was already present.
+     */
+    TreapNode<T> add(TreapNode<T> newNode, Deque<TreapNode<T>> path, Comparator<? super T> order,
+                     TreapMetrics.Trace trace) {
+        TreapNode<T> current = this;
+        int depth = 0;
+        while (true) {
+            depth++;
+            final int comparison = order.compare(newNode.value, current.value);
+            if (comparison == 0) {
+                path.clear();
+                if (trace != null) {
+                    trace.pathLength = depth;
+                    trace.comparisons = depth;
+                    trace.rotations = 0;
+                }
+                return this;
+            }
 
-        if (right != null) {
-            right = right.balance();
-            if (right.priority > priority) {
-                return rotateLeft().balance();
+            path.push(current);
+            if (comparison < 0) {
+                // Add to the left side
+                if (current.left == null) {
+                    current.left = newNode;
+                    break;
+                }
+                current = current.left;
             }
-            if (right.priority == Integer.MIN_VALUE && right.left == null && right.right == null) {
-                right = null;
+            else {
+                // Add to the right side
+                if (current.right == null) {
+                    current.right = newNode;
+                    break;
+                }
+                current = current.right;
             }
         }
 
-        if (left != null) {
-            left = left.balance();
-            if (left.priority > priority) {
-                return rotateRight().balance();
+        // Walk back up, growing each ancestor and lifting the new node while it outranks its parent.
+        TreapNode<T> root = this;
+        boolean rising = true;
+        int rotations = 0;
+        while (!path.isEmpty()) {
+            final TreapNode<T> parent = path.pop();
+            parent.updateSize();
+            if (rising && newNode.priority > parent.priority) {
+                final TreapNode<T> lifted = parent.left == newNode ? parent.rotateRight() : parent.rotateLeft();
+                rotations++;
+                final TreapNode<T> grandparent = path.peek();
+                if (grandparent == null) {
+                    root = lifted;
+                }
+                else if (grandparent.left == parent) {
+                    grandparent.left = lifted;
+                }
+                else {
+                    grandparent.right = lifted;
+                }
             }
-            if (left.priority == Integer.MIN_VALUE && left.left == null && left.right == null) {
-                left = null;
+            else {
+                rising = false;
             }
         }
 
-        return this;
+        if (trace != null) {
+            trace.pathLength = depth;
+            trace.comparisons = depth;
+            trace.rotations = rotations;
+        }
+        return root;
     }
 
     /**
@@ -157,6 +239,8 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
         final TreapNode<T> l = left;
         left = left.right;
         l.right = this;
+        updateSize();
+        l.updateSize();
         return l;
     }
 
@@ -168,54 +252,750 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
         final TreapNode<T> r = right;
         right = right.left;
         r.left = this;
+        updateSize();
+        r.updateSize();
         return r;
     }
 
-    boolean contains(T item) {
+    /**
+     * Look for the given item in this subtree, with a single three-way comparison per level.
+     *
+     * @param item  the value to look for
+     * @param order the ordering of the tree
+     * @param trace receives the shape of the search, may be {@code null}
+     * @return whether the item is present
+     */
+    boolean contains(T item, Comparator<? super T> order, TreapMetrics.Trace trace) {
         Objects.requireNonNull(item);
-        if (value.equals(item)) {
-            return true;
+        TreapNode<T> current = this;
+        int depth = 0;
+        boolean found = false;
+        while (current != null) {
+            depth++;
+            final int comparison = order.compare(item, current.value);
+            if (comparison == 0) {
+                found = true;
+                break;
+            }
+            current = comparison < 0 ? current.left : current.right;
         }
-        if (value.compareTo(item) > 0)  {
-            return left != null && left.contains(item);
+
+        if (trace != null) {
+            trace.pathLength = depth;
+            trace.comparisons = depth;
+            trace.rotations = 0;
         }
-        return right != null && right.contains(item);
+        return found;
     }
 
-    boolean remove(T item) {
+    /**
+     * Look for the given item as {@link #contains} does, leaving the path to it on the given stack so
+     * that the caller can restructure the tree around it.
+     *
+     * @param item  the value to look for
+     * @param path  receives the ancestors of the matching node, its parent on top; left empty if there
+     *              is none
+     * @param order the ordering of the tree
+     * @param trace receives the shape of the search, may be {@code null}
+     * @return the node holding the item, or {@code null} if it is not present
+     */
+    TreapNode<T> find(T item, Deque<TreapNode<T>> path, Comparator<? super T> order, TreapMetrics.Trace trace) {
         Objects.requireNonNull(item);
-        if (item.equals(value)) {
-            priority = Integer.MIN_VALUE;
-            return true;
+        TreapNode<T> current = this;
+        int depth = 0;
+        while (current != null) {
+            depth++;
+            final int comparison = order.compare(item, current.value);
+            if (comparison == 0) {
+                break;
+            }
+            path.push(current);
+            current = comparison < 0 ? current.left : current.right;
         }
 
-        return (left != null && left.remove(item))
-               || (right != null && right.remove(item));
+        if (current == null) {
+            path.clear();
+        }
+        if (trace != null) {
+            trace.pathLength = depth;
+            trace.comparisons = depth;
+            trace.rotations = 0;
+        }
+        return current;
     }
 
-    void toStringRecursive(StringBuilder sb, int depth) {
-        if (depth != 0) {
-            sb.append(String.format("%1$" + (depth * 4) + "s", ""));
+    /**
+     * Raise the priority of a node in this subtree, rotating it up past every ancestor it now outranks.
+     *
+     * @param node     a node found by {@link #find}
+     * @param priority the new priority, no less than the node's current one
+     * @param path     the ancestors of the node, as left by {@link #find}; left empty afterwards
+     * @param trace    receives the number of rotations, may be {@code null}
+     * @return the new local root node, which is {@code node} if it was lifted all the way
+     */
+    TreapNode<T> raise(TreapNode<T> node, int priority, Deque<TreapNode<T>> path, TreapMetrics.Trace trace) {
+        node.priority = priority;
+        TreapNode<T> root = this;
+        int rotations = 0;
+        while (!path.isEmpty() && priority > path.peek().priority) {
+            final TreapNode<T> parent = path.pop();
+            final TreapNode<T> lifted = parent.left == node ? parent.rotateRight() : parent.rotateLeft();
+            rotations++;
+            final TreapNode<T> grandparent = path.peek();
+            if (grandparent == null) {
+                root = lifted;
+            }
+            else if (grandparent.left == parent) {
+                grandparent.left = lifted;
+            }
+            else {
+                grandparent.right = lifted;
+            }
         }
-        sb.append(toString());
-        sb.append(System.lineSeparator());
-        if (right == null && left == null) {
-            return;
+        path.clear();
+
+        if (trace != null) {
+            trace.rotations = rotations;
         }
+        return root;
+    }
 
-        if (right == null) {
-            sb.append(String.format("%1$" + ((depth + 1) * 4) + "s", ""))
-              .append(NULL_NODE_STRING).append(System.lineSeparator());
+    /**
+     * Remove the given item from this subtree, descending by comparison and unlinking the matching
+     * node by merging its children in its place.
+     *
+     * @param item  the value to remove
+     * @param path  scratch stack for the deletion path, which is left empty again afterwards
+     * @param order the ordering of the tree
+     * @param trace receives the shape of the removal, may be {@code null}
+     * @return the new local root node, or {@code null} if the subtree is now empty. The subtree size is
+     * unchanged if the item was not present.
+     */
+    TreapNode<T> remove(T item, Deque<TreapNode<T>> path, Comparator<? super T> order,
+                        TreapMetrics.Trace trace) {
+        Objects.requireNonNull(item);
+        TreapNode<T> current = this;
+        int depth = 0;
+        while (true) {
+            if (current == null) {
+                path.clear();
+                if (trace != null) {
+                    trace.pathLength = depth;
+                    trace.comparisons = depth;
+                    trace.rotations = 0;
+                }
+                return this;
+            }
+
+            depth++;
+            final int comparison = order.compare(item, current.value);
+            if (comparison == 0) {
+                break;
+            }
+            path.push(current);
+            current = comparison < 0 ? current.left : current.right;
+        }
+
+        if (trace != null) {
+            trace.pathLength = depth;
+            trace.comparisons = depth;
+            trace.rotations = 0;
+        }
+
+        final TreapNode<T> replacement = merge(current.left, current.right);
+        final TreapNode<T> parent = path.peek();
+        if (parent == null) {
+            return replacement;
+        }
+        if (parent.left == current) {
+            parent.left = replacement;
         }
         else {
-            right.toStringRecursive(sb, depth + 1);
+            parent.right = replacement;
+        }
+
+        while (!path.isEmpty()) {
+            path.pop().updateSize();
         }
+        return this;
+    }
+
+    /**
+     * Merge two treaps, where every value in {@code left} is less than every value in {@code right}, by
+     * zipping together the right spine of {@code left} and the left spine of {@code right}.
+     *
+     * @param left  the treap holding the lesser values, may be {@code null}
+     * @param right the treap holding the greater values, may be {@code null}
+     * @return the root of the merged treap
+     */
+    static <T> TreapNode<T> merge(TreapNode<T> left, TreapNode<T> right) {
         if (left == null) {
-            sb.append(String.format("%1$" + ((depth + 1) * 4) + "s", ""))
-              .append(NULL_NODE_STRING).append(System.lineSeparator());
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        // Nodes whose children change, deepest on top, so their sizes can be fixed bottom-up.
+        final Deque<TreapNode<T>> touched = new ArrayDeque<>();
+        TreapNode<T> root = null;
+        TreapNode<T> parent = null;
+        boolean attachRight = false;
+        while (left != null && right != null) {
+            final TreapNode<T> chosen;
+            final boolean fromLeft = left.priority > right.priority;
+            if (fromLeft) {
+                // The rest of the merge replaces the chosen node's right subtree.
+                chosen = left;
+                left = left.right;
+            }
+            else {
+                // The rest of the merge replaces the chosen node's left subtree.
+                chosen = right;
+                right = right.left;
+            }
+            touched.push(chosen);
+
+            if (parent == null) {
+                root = chosen;
+            }
+            else if (attachRight) {
+                parent.right = chosen;
+            }
+            else {
+                parent.left = chosen;
+            }
+            parent = chosen;
+            attachRight = fromLeft;
+        }
+
+        final TreapNode<T> rest = left == null ? right : left;
+        if (attachRight) {
+            parent.right = rest;
         }
         else {
-            left.toStringRecursive(sb, depth + 1);
+            parent.left = rest;
+        }
+
+        while (!touched.isEmpty()) {
+            touched.pop().updateSize();
+        }
+        return root;
+    }
+
+    /**
+     * Build a treap from values which are already in strictly ascending order, in linear time. Each
+     * new node is attached to the right spine of the tree built so far: spine nodes with a lower
+     * priority are popped off and become its left subtree, which finishes their subtree sizes.
+     *
+     * @param sorted     strictly ascending, non-null values
+     * @param priorities the source of the new nodes' priorities
+     * @return the root of the new treap, or {@code null} if there were no values
+     */
+    static <T> TreapNode<T> build(Iterable<? extends T> sorted, PriorityGenerator priorities) {
+        return build(sorted, priorities, TreapNode::new);
+    }
+
+    /**
+     * Build a treap as {@link #build(Iterable, PriorityGenerator)} does, creating its nodes with the
+     * given factory.
+     *
+     * @param sorted     strictly ascending, non-null values
+     * @param priorities the source of the new nodes' priorities
+     * @param factory    creates a leaf node from a value and priority
+     * @return the root of the new treap, or {@code null} if there were no values
+     */
+    static <T> TreapNode<T> build(Iterable<? extends T> sorted, PriorityGenerator priorities,
+                                  Factory<T> factory) {
+        final Deque<TreapNode<T>> spine = new ArrayDeque<>();
+
+        for (T value : sorted) {
+            final TreapNode<T> node = factory.create(value, priorities.nextPriority());
+            TreapNode<T> popped = null;
+            while (!spine.isEmpty() && spine.peek().priority < node.priority) {
+                popped = spine.pop();
+                popped.updateSize();
+            }
+            node.left = popped;
+            if (!spine.isEmpty()) {
+                spine.peek().right = node;
+            }
+            spine.push(node);
+        }
+
+        TreapNode<T> root = null;
+        while (!spine.isEmpty()) {
+            root = spine.pop();
+            root.updateSize();
+        }
+        return root;
+    }
+
+    /**
+     * Creates leaf nodes, so that trees whose nodes are a subclass of {@link TreapNode} can still be
+     * built by {@link #build(Iterable, PriorityGenerator, Factory)}.
+     */
+    @FunctionalInterface
+    interface Factory<T> {
+        TreapNode<T> create(T value, int priority);
+    }
+
+    /**
+     * The three parts of a treap produced by {@link #split(TreapNode, Object, Comparator)}, or the two produced
+     * by {@link #splitAt(TreapNode, int)}.
+     */
+    static final class Split<T> {
+        /**
+         * Root of the treap holding every value less than the key.
+         */
+        TreapNode<T> less;
+        /**
+         * The detached node holding the key itself, or {@code null} if the key was not present.
+         */
+        TreapNode<T> equal;
+        /**
+         * Root of the treap holding every value greater than the key.
+         */
+        TreapNode<T> greater;
+    }
+
+    /**
+     * Split a treap around the given key. The existing nodes are relinked rather than copied, so
+     * {@code node} must not be used afterwards.
+     *
+     * @param node  root of the treap to split, may be {@code null}
+     * @param key   the value to split around
+     * @param order the ordering of the treap
+     * @return the lesser and greater treaps and the detached node equal to {@code key}, if any
+     */
+    static <T> Split<T> split(TreapNode<T> node, T key, Comparator<? super T> order) {
+        Objects.requireNonNull(key);
+        final Split<T> result = new Split<>();
+        // Nodes whose children change, deepest on top, so their sizes can be fixed bottom-up.
+        final Deque<TreapNode<T>> touched = new ArrayDeque<>();
+        TreapNode<T> lessTail = null;
+        TreapNode<T> greaterTail = null;
+        TreapNode<T> lessRest = null;
+        TreapNode<T> greaterRest = null;
+
+        TreapNode<T> current = node;
+        while (current != null) {
+            final int comparison = order.compare(key, current.value);
+            if (comparison < 0) {
+                // current and its right subtree are greater; keep splitting its left subtree.
+                if (greaterTail == null) {
+                    result.greater = current;
+                }
+                else {
+                    greaterTail.left = current;
+                }
+                greaterTail = current;
+                touched.push(current);
+                current = current.left;
+            }
+            else if (comparison > 0) {
+                // current and its left subtree are less; keep splitting its right subtree.
+                if (lessTail == null) {
+                    result.less = current;
+                }
+                else {
+                    lessTail.right = current;
+                }
+                lessTail = current;
+                touched.push(current);
+                current = current.right;
+            }
+            else {
+                lessRest = current.left;
+                greaterRest = current.right;
+                result.equal = current;
+                current.left = null;
+                current.right = null;
+                current.updateSize();
+                break;
+            }
+        }
+
+        if (lessTail == null) {
+            result.less = lessRest;
+        }
+        else {
+            lessTail.right = lessRest;
+        }
+        if (greaterTail == null) {
+            result.greater = greaterRest;
+        }
+        else {
+            greaterTail.left = greaterRest;
+        }
+
+        while (!touched.isEmpty()) {
+            touched.pop().updateSize();
+        }
+        return result;
+    }
+
+    /**
+     * Split a treap by position: the first {@code index} values in order go to {@link Split#less}, and
+     * the rest to {@link Split#greater}. As with {@link #split(TreapNode, Object, Comparator)}, the nodes are
+     * relinked rather than copied.
+     *
+     * @param node  root of the treap to split, may be {@code null}
+     * @param index number of values to put in the lesser treap, in {@code [0, size(node)]}
+     * @return the lesser and greater treaps; {@link Split#equal} is always {@code null}
+     */
+    static <T> Split<T> splitAt(TreapNode<T> node, int index) {
+        final Split<T> result = new Split<>();
+        final Deque<TreapNode<T>> touched = new ArrayDeque<>();
+        TreapNode<T> lessTail = null;
+        TreapNode<T> greaterTail = null;
+
+        TreapNode<T> current = node;
+        while (current != null) {
+            touched.push(current);
+            final int leftSize = size(current.left);
+            if (index <= leftSize) {
+                // current and its right subtree come after the split point.
+                if (greaterTail == null) {
+                    result.greater = current;
+                }
+                else {
+                    greaterTail.left = current;
+                }
+                greaterTail = current;
+                current = current.left;
+            }
+            else {
+                // current and its left subtree come before the split point.
+                if (lessTail == null) {
+                    result.less = current;
+                }
+                else {
+                    lessTail.right = current;
+                }
+                lessTail = current;
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+
+        if (lessTail != null) {
+            lessTail.right = null;
+        }
+        if (greaterTail != null) {
+            greaterTail.left = null;
+        }
+        while (!touched.isEmpty()) {
+            touched.pop().updateSize();
+        }
+        return result;
+    }
+
+    /**
+     * Divide-and-conquer set algebra over two treaps. The higher-priority root is split around the
+     * other treap, the operation recurses independently into the lesser and greater halves, and the
+     * results are reattached (or merged, if the root itself is dropped). Above
+     * {@link #PARALLEL_THRESHOLD} combined nodes the lesser half is forked onto the pool; below it the
+     * recursion runs sequentially. Both input treaps are consumed.
+     */
+    static final class SetOperation<T> extends RecursiveTask<TreapNode<T>> {
+        private static final long serialVersionUID = 1L;
+
+        enum Kind {
+            UNION, INTERSECTION, DIFFERENCE
+        }
+
+        /**
+         * Combined subtree size below which forking costs more than it saves.
+         */
+        static final int PARALLEL_THRESHOLD = 1 << 13;
+
+        private final Kind kind;
+        private final TreapNode<T> a;
+        private final TreapNode<T> b;
+        private final Comparator<? super T> order;
+
+        /**
+         * @param kind  which operation to perform
+         * @param a     the left-hand operand; for {@link Kind#DIFFERENCE} the treap to subtract from
+         * @param b     the right-hand operand
+         * @param order the ordering shared by both operands
+         */
+        SetOperation(Kind kind, TreapNode<T> a, TreapNode<T> b, Comparator<? super T> order) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.order = order;
+        }
+
+        @Override
+        protected TreapNode<T> compute() {
+            if (a == null || b == null || size(a) + size(b) < PARALLEL_THRESHOLD) {
+                return apply(kind, a, b, order);
+            }
+
+            final TreapNode<T> root = pickRoot(kind, a, b);
+            final Split<T> split = split(root == a ? b : a, root.value, order);
+            final SetOperation<T> lesser = new SetOperation<>(kind, root.left, split.less, order);
+            lesser.fork();
+            final TreapNode<T> right = new SetOperation<>(kind, root.right, split.greater, order).compute();
+            return combine(kind, root, split.equal != null, lesser.join(), right);
+        }
+
+        private static <T> TreapNode<T> apply(Kind kind, TreapNode<T> a, TreapNode<T> b,
+                                              Comparator<? super T> order) {
+            if (a == null || b == null) {
+                switch (kind) {
+                    case UNION:
+                        return a == null ? b : a;
+                    case INTERSECTION:
+                        return null;
+                    default:
+                        return a;
+                }
+            }
+
+            final TreapNode<T> root = pickRoot(kind, a, b);
+            final Split<T> split = split(root == a ? b : a, root.value, order);
+            final TreapNode<T> left = apply(kind, root.left, split.less, order);
+            final TreapNode<T> right = apply(kind, root.right, split.greater, order);
+            return combine(kind, root, split.equal != null, left, right);
+        }
+
+        /**
+         * The symmetric operations keep the higher-priority root so the result stays a heap;
+         * {@link Kind#DIFFERENCE} can only ever keep nodes from {@code a}.
+         */
+        private static <T> TreapNode<T> pickRoot(Kind kind, TreapNode<T> a, TreapNode<T> b) {
+            return kind == Kind.DIFFERENCE || a.priority >= b.priority ? a : b;
+        }
+
+        private static <T> TreapNode<T> combine(Kind kind, TreapNode<T> root, boolean inBoth,
+                                                TreapNode<T> left, TreapNode<T> right) {
+            final boolean keepRoot = kind == Kind.UNION
+                                     || kind == Kind.INTERSECTION && inBoth
+                                     || kind == Kind.DIFFERENCE && !inBoth;
+            if (!keepRoot) {
+                return merge(left, right);
+            }
+            root.left = left;
+            root.right = right;
+            root.updateSize();
+            return root;
+        }
+    }
+
+    /**
+     * Get the least value in this subtree.
+     *
+     * @return the leftmost value
+     */
+    T first() {
+        TreapNode<T> current = this;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.value;
+    }
+
+    /**
+     * Get the greatest value in this subtree.
+     *
+     * @return the rightmost value
+     */
+    T last() {
+        TreapNode<T> current = this;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.value;
+    }
+
+    /**
+     * Find the value at the given position in the in-order traversal of this subtree.
+     *
+     * @param index zero-based position, must be in {@code [0, size())}
+     * @return the value at that position
+     */
+    T get(int index) {
+        return nodeAt(index).value;
+    }
+
+    /**
+     * Find the node at the given position in the in-order traversal of this subtree.
+     *
+     * @param index zero-based position, must be in {@code [0, size())}
+     * @return the node at that position
+     */
+    TreapNode<T> nodeAt(int index) {
+        TreapNode<T> current = this;
+        while (true) {
+            final int leftSize = size(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            }
+            else if (index == leftSize) {
+                return current;
+            }
+            else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    /**
+     * Count the values in this subtree which are less than, or optionally equal to, the given item.
+     *
+     * @param item      to compare against
+     * @param inclusive whether a value equal to {@code item} is counted
+     * @param order     the ordering of the tree
+     * @return the number of matching values
+     */
+    int countLessThan(T item, boolean inclusive, Comparator<? super T> order) {
+        Objects.requireNonNull(item);
+        int count = 0;
+        TreapNode<T> current = this;
+        while (current != null) {
+            final int comparison = order.compare(item, current.value);
+            if (comparison > 0) {
+                count += size(current.left) + 1;
+                current = current.right;
+            }
+            else if (comparison < 0) {
+                current = current.left;
+            }
+            else {
+                return count + size(current.left) + (inclusive ? 1 : 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find the greatest value in this subtree which is less than, or optionally equal to, the given item.
+     *
+     * @param item      the upper bound
+     * @param inclusive whether a value equal to {@code item} qualifies
+     * @param order     the ordering of the tree
+     * @return the matching value, or {@code null} if there is none
+     */
+    T lower(T item, boolean inclusive, Comparator<? super T> order) {
+        Objects.requireNonNull(item);
+        T best = null;
+        TreapNode<T> current = this;
+        while (current != null) {
+            final int comparison = order.compare(item, current.value);
+            if (comparison > 0) {
+                best = current.value;
+                current = current.right;
+            }
+            else if (comparison < 0) {
+                current = current.left;
+            }
+            else if (inclusive) {
+                return current.value;
+            }
+            else {
+                current = current.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Find the least value in this subtree which is greater than, or optionally equal to, the given item.
+     *
+     * @param item      the lower bound
+     * @param inclusive whether a value equal to {@code item} qualifies
+     * @param order     the ordering of the tree
+     * @return the matching value, or {@code null} if there is none
+     */
+    T higher(T item, boolean inclusive, Comparator<? super T> order) {
+        Objects.requireNonNull(item);
+        T best = null;
+        TreapNode<T> current = this;
+        while (current != null) {
+            final int comparison = order.compare(item, current.value);
+            if (comparison < 0) {
+                best = current.value;
+                current = current.left;
+            }
+            else if (comparison > 0) {
+                current = current.right;
+            }
+            else if (inclusive) {
+                return current.value;
+            }
+            else {
+                current = current.right;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Find the position of the given item in the in-order traversal of this subtree.
+     *
+     * @param item  to look for
+     * @param order the ordering of the tree
+     * @return the zero-based position of the item, or {@code -1} if it is not present
+     */
+    int rankOf(T item, Comparator<? super T> order) {
+        Objects.requireNonNull(item);
+        int count = 0;
+        TreapNode<T> current = this;
+        while (current != null) {
+            final int comparison = order.compare(item, current.value);
+            if (comparison > 0) {
+                count += size(current.left) + 1;
+                current = current.right;
+            }
+            else if (comparison < 0) {
+                current = current.left;
+            }
+            else {
+                return count + size(current.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append an indented, pre-order dump of this subtree to the given builder, one node per line with
+     * the right child before the left. A missing child of a node which has the other is shown as
+     * {@link #NULL_NODE_STRING}.
+     *
+     * @param sb    the builder to append to
+     * @param depth the indentation level of this node
+     */
+    void toStringTree(StringBuilder sb, int depth) {
+        // ArrayDeque can't hold the null placeholders, so use lists as the stack.
+        final List<TreapNode<T>> nodes = new ArrayList<>();
+        final List<Integer> depths = new ArrayList<>();
+        nodes.add(this);
+        depths.add(depth);
+
+        while (!nodes.isEmpty()) {
+            final TreapNode<T> node = nodes.remove(nodes.size() - 1);
+            final int nodeDepth = depths.remove(depths.size() - 1);
+            if (nodeDepth != 0) {
+                sb.append(String.format("%1$" + (nodeDepth * 4) + "s", ""));
+            }
+
+            if (node == null) {
+                sb.append(NULL_NODE_STRING).append(System.lineSeparator());
+                continue;
+            }
+
+            sb.append(node.toString());
+            sb.append(System.lineSeparator());
+            if (node.left != null || node.right != null) {
+                nodes.add(node.left);
+                depths.add(nodeDepth + 1);
+                nodes.add(node.right);
+                depths.add(nodeDepth + 1);
+            }
         }
     }
 
@@ -235,26 +1015,44 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
      * @return length of the longest branch of the tree;
      */
     int maxDepth() {
-        return aggregateDepth(Math::max);
+        final Queue<TreapNode<T>> level = new ArrayDeque<>();
+        level.add(this);
+        int depth = 0;
+        while (!level.isEmpty()) {
+            depth++;
+            for (int i = level.size(); i > 0; i--) {
+                final TreapNode<T> node = level.remove();
+                if (node.left != null) {
+                    level.add(node.left);
+                }
+                if (node.right != null) {
+                    level.add(node.right);
+                }
+            }
+        }
+        return depth;
     }
 
     /**
-     * The length of the shortest branch of the tree.
+     * The length of the shortest branch of the tree, ending at the first node missing a child.
      *
      * @return length of the shortest branch of the tree;
      */
     int minDepth() {
-        return aggregateDepth(Math::min);
-    }
-
-    /**
-     * Tail-recursive reducer of depth using the given {@link BiFunction}.
-     * @param consumer the {@link Integer} aggregator
-     * @return the processed depth
-     */
-    private int aggregateDepth(BiFunction<Integer, Integer, Integer> consumer) {
-        return 1 + consumer.apply(left == null ? 0 : left.aggregateDepth(consumer),
-                              right == null ? 0 : right.aggregateDepth(consumer));
+        final Queue<TreapNode<T>> level = new ArrayDeque<>();
+        level.add(this);
+        int depth = 0;
+        while (true) {
+            depth++;
+            for (int i = level.size(); i > 0; i--) {
+                final TreapNode<T> node = level.remove();
+                if (node.left == null || node.right == null) {
+                    return depth;
+                }
+                level.add(node.left);
+                level.add(node.right);
+            }
+        }
     }
 
     /**
@@ -263,7 +1061,10 @@ class TreapNode<T extends Comparable<T>> implements Comparable<TreapNode<T>> {
      * @return estimated depth of the tree, from the height of the left edge.
      */
     int leftDepth() {
-        return 1 + (left == null ? 0 : left.leftDepth());
+        int depth = 1;
+        for (TreapNode<T> current = left; current != null; current = current.left) {
+            depth++;
+        }
+        return depth;
     }
 }
-
@@ -0,0 +1,124 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+class AggregatingTreapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+
+    private static final Aggregator<Integer, Long> SUM = Aggregator.of(0L, Integer::longValue, Long::sum);
+
+    /**
+     * Not commutative, so it also checks that ranges are combined in order.
+     */
+    private static final Aggregator<Integer, String> CONCATENATION =
+            Aggregator.of("", value -> value + ",", String::concat);
+
+    private static long sum(TreeSet<Integer> set, int from, boolean fromInclusive, int to, boolean toInclusive) {
+        return set.subSet(from, fromInclusive, to, toInclusive).stream().mapToLong(Integer::longValue).sum();
+    }
+
+    @Test
+    void testRandomOperations() {
+        AggregatingTreap<Integer, Long> treap = new AggregatingTreap<>(SUM);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = random.nextInt(1024);
+            if (random.nextBoolean()) {
+                Assertions.assertEquals(expected.add(value), treap.add(value));
+            }
+            else {
+                Assertions.assertEquals(expected.remove(value), treap.remove(value));
+            }
+
+            int from = random.nextInt(1024);
+            int to = from + random.nextInt(1024 - from);
+            boolean fromInclusive = random.nextBoolean();
+            boolean toInclusive = random.nextBoolean();
+            Assertions.assertEquals(sum(expected, from, fromInclusive, to, toInclusive),
+                                    treap.aggregate(from, fromInclusive, to, toInclusive));
+        }
+        Assertions.assertEquals(sum(expected, 0, true, 1024, false), treap.aggregate());
+    }
+
+    @Test
+    void testRangesAreCombinedInOrder() {
+        AggregatingTreap<Integer, String> treap = new AggregatingTreap<>(CONCATENATION);
+        for (int value : new int[]{5, 1, 9, 3, 7, 2, 8, 4, 6}) {
+            treap.add(value);
+        }
+        Assertions.assertEquals("1,2,3,4,5,6,7,8,9,", treap.aggregate());
+        Assertions.assertEquals("3,4,5,6,", treap.aggregate(3, 7));
+        Assertions.assertEquals("4,5,6,7,", treap.aggregate(3, false, 7, true));
+        Assertions.assertEquals("", treap.aggregate(10, 20));
+        Assertions.assertEquals("", treap.aggregate(5, false, 5, true));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> treap.aggregate(7, 3));
+
+        treap.remove(5);
+        Assertions.assertEquals("3,4,6,", treap.aggregate(3, 7));
+    }
+
+    @Test
+    void testBulkAndTreapOperations() {
+        AggregatingTreap<Integer, String> treap =
+                new AggregatingTreap<>(CONCATENATION, Arrays.asList(8, 2, 6, 4, 10));
+        Assertions.assertEquals("2,4,6,8,10,", treap.aggregate());
+
+        AggregatingTreap<Integer, String> upper = treap.split(6);
+        Assertions.assertEquals("2,4,", treap.aggregate());
+        Assertions.assertEquals("6,8,10,", upper.aggregate());
+
+        treap.join(upper);
+        Assertions.assertEquals("2,4,6,8,10,", treap.aggregate());
+
+        treap.union(new Treap<>(Arrays.asList(1, 3, 11)));
+        Assertions.assertEquals("1,2,3,4,6,8,10,11,", treap.aggregate());
+        Assertions.assertEquals("3,4,6,", treap.aggregate(3, 7));
+
+        treap.difference(new Treap<>(Arrays.asList(2, 8)));
+        Assertions.assertEquals("1,3,4,6,10,11,", treap.aggregate());
+
+        treap.retainAll(Arrays.asList(1, 4, 10, 12));
+        Assertions.assertEquals("1,4,10,", treap.aggregate());
+        Assertions.assertEquals(Arrays.asList(1, 4, 10), treap.stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    void testPlainTreapOperationsOnAggregatingTreaps() {
+        Treap<Integer> plain = new Treap<>(Arrays.asList(1, 2, 3));
+        AggregatingTreap<Integer, String> upper = new AggregatingTreap<>(CONCATENATION, Arrays.asList(5, 6));
+        plain.join(upper);
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 5, 6), plain.asList());
+        Assertions.assertTrue(upper.isEmpty());
+        upper.add(9);
+        Assertions.assertEquals("9,", upper.aggregate());
+
+        // A failed join leaves both sides as they were.
+        AggregatingTreap<Integer, String> overlapping =
+                new AggregatingTreap<>(CONCATENATION, Arrays.asList(2, 8));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> plain.join(overlapping));
+        Assertions.assertEquals("2,8,", overlapping.aggregate());
+        Assertions.assertEquals(5, plain.size());
+
+        plain.union(overlapping);
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 5, 6, 8), plain.asList());
+        Assertions.assertTrue(overlapping.isEmpty());
+
+        plain.intersection(new AggregatingTreap<>(SUM, Arrays.asList(2, 3, 4, 8)));
+        Assertions.assertEquals(Arrays.asList(2, 3, 8), plain.asList());
+        plain.difference(new AggregatingTreap<>(SUM, Arrays.asList(3)));
+        Assertions.assertEquals(Arrays.asList(2, 8), plain.asList());
+        TreapNodeTest.assertInvariants(plain.getRoot());
+
+        // Treaps maintaining different aggregates cannot share nodes either.
+        AggregatingTreap<Integer, Long> sums = new AggregatingTreap<>(SUM, Arrays.asList(1, 2));
+        sums.union(new AggregatingTreap<>(CONCATENATION, Arrays.asList(2, 3)));
+        Assertions.assertEquals(6L, sums.aggregate());
+    }
+}
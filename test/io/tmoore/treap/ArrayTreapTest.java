@@ -0,0 +1,120 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+class ArrayTreapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+
+    @Test
+    void testRandomOperations() {
+        ArrayTreap<Integer> treap = new ArrayTreap<>(0, PriorityGenerator.threadLocal());
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = random.nextInt(512);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Assertions.assertEquals(expected.add(value), treap.add(value));
+                    break;
+                case 1:
+                    Assertions.assertEquals(expected.remove(value), treap.remove(value));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.contains(value), treap.contains(value));
+            }
+            Assertions.assertEquals(expected.size(), treap.size());
+        }
+        Assertions.assertEquals(new ArrayList<>(expected), new ArrayList<>(treap));
+        Assertions.assertEquals(expected, treap);
+    }
+
+    @Test
+    void testBulkConstruction() {
+        ArrayTreap<Integer> treap = new ArrayTreap<>(Arrays.asList(5, 3, 9, 3, 1, 5));
+        Assertions.assertEquals(Arrays.asList(1, 3, 5, 9), new ArrayList<>(treap));
+        Assertions.assertTrue(treap.add(4));
+        Assertions.assertTrue(treap.remove(9));
+        Assertions.assertEquals(Arrays.asList(1, 3, 4, 5), new ArrayList<>(treap));
+        Assertions.assertTrue(new ArrayTreap<Integer>().isEmpty());
+    }
+
+    @Test
+    void testOrderStatistics() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        while (expected.size() < 1024) {
+            expected.add(random.nextInt());
+        }
+        ArrayTreap<Integer> treap = new ArrayTreap<>();
+        treap.addAll(expected);
+
+        Assertions.assertEquals(expected.first(), treap.first());
+        Assertions.assertEquals(expected.last(), treap.last());
+        List<Integer> ordered = new ArrayList<>(expected);
+        for (int i = 0; i < ordered.size(); i++) {
+            Assertions.assertEquals(ordered.get(i), treap.get(i));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> treap.get(ordered.size()));
+
+        treap.clear();
+        Assertions.assertTrue(treap.isEmpty());
+        Assertions.assertThrows(NoSuchElementException.class, treap::first);
+        Assertions.assertThrows(NoSuchElementException.class, treap::last);
+    }
+
+    @Test
+    void testSlotsAreReused() {
+        ArrayTreap<String> treap = new ArrayTreap<>();
+        for (int round = 0; round < 8; round++) {
+            for (int i = 0; i < 256; i++) {
+                Assertions.assertTrue(treap.add("key" + i));
+            }
+            Assertions.assertFalse(treap.contains("missing"));
+            for (int i = 0; i < 256; i++) {
+                Assertions.assertTrue(treap.remove("key" + i));
+            }
+            Assertions.assertTrue(treap.isEmpty());
+        }
+    }
+
+    @Test
+    void testIteratorRemove() {
+        ArrayTreap<Integer> treap = new ArrayTreap<>(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8));
+        Iterator<Integer> iterator = treap.iterator();
+        Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+
+        List<Integer> seen = new ArrayList<>();
+        while (iterator.hasNext()) {
+            int next = iterator.next();
+            seen.add(next);
+            if (next % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), seen);
+        Assertions.assertEquals(Arrays.asList(1, 3, 5, 7), new ArrayList<>(treap));
+
+        Iterator<Integer> stale = treap.iterator();
+        treap.add(2);
+        Assertions.assertThrows(ConcurrentModificationException.class, stale::next);
+    }
+
+    @Test
+    void testSubclassElements() {
+        ArrayTreap<Date> treap = new ArrayTreap<>(Arrays.asList(new Date(1000), new Date(2000)));
+        Assertions.assertTrue(treap.contains(new java.sql.Date(2000)));
+        Assertions.assertTrue(treap.remove(new java.sql.Date(1000)));
+        Assertions.assertEquals(1, treap.size());
+        Assertions.assertThrows(ClassCastException.class, () -> treap.contains("not a date"));
+    }
+}
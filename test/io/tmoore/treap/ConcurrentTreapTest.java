@@ -0,0 +1,292 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class ConcurrentTreapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+    private static final int THREADS = 8;
+
+    @Test
+    void testRandomOperations() {
+        ConcurrentTreap<Integer> treap = new ConcurrentTreap<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = random.nextInt(512);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Assertions.assertEquals(expected.add(value), treap.add(value));
+                    break;
+                case 1:
+                    Assertions.assertEquals(expected.remove(value), treap.remove(value));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.contains(value), treap.contains(value));
+            }
+            Assertions.assertEquals(expected.size(), treap.size());
+        }
+        Assertions.assertEquals(expected, treap);
+        Assertions.assertEquals(new ArrayList<>(expected), treap.stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    void testIterationIsASnapshot() {
+        ConcurrentTreap<Integer> treap = new ConcurrentTreap<>(Arrays.asList(1, 2, 3, 4));
+        PersistentTreap<Integer> snapshot = treap.snapshot();
+        Iterator<Integer> iterator = treap.iterator();
+
+        treap.add(5);
+        treap.remove(1);
+        List<Integer> seen = new ArrayList<>();
+        iterator.forEachRemaining(seen::add);
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4), seen);
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4), snapshot.asList());
+        Assertions.assertEquals(Arrays.asList(2, 3, 4, 5), treap.snapshot().asList());
+
+        iterator = treap.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals(Arrays.asList(3, 5), treap.snapshot().asList());
+    }
+
+    @Test
+    void testBatchesArePublishedAtomically() throws Exception {
+        ConcurrentTreap<Integer> treap = new ConcurrentTreap<>();
+        List<Integer> batch = IntStream.range(0, 1024).boxed().collect(Collectors.toList());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader = executor.submit(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    int size = treap.snapshot().size();
+                    Assertions.assertTrue(size == 0 || size == batch.size(), "Saw a partial batch: " + size);
+                    if (size != 0) {
+                        return;
+                    }
+                }
+            });
+            Assertions.assertTrue(treap.addAll(batch));
+            reader.get(10, TimeUnit.SECONDS);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertFalse(treap.addAll(batch));
+        Assertions.assertTrue(treap.removeAll(batch.subList(0, 512)));
+        Assertions.assertEquals(batch.subList(512, 1024), treap.snapshot().asList());
+    }
+
+    @Test
+    void testConcurrentWriters() throws Exception {
+        ConcurrentTreap<Integer> treap = new ConcurrentTreap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        Assertions.assertTrue(treap.add(i * THREADS + thread));
+                        Assertions.assertTrue(treap.contains(i * THREADS + thread));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(OPERATIONS * THREADS, treap.size());
+        Assertions.assertEquals(IntStream.range(0, OPERATIONS * THREADS).boxed().collect(Collectors.toList()),
+                                treap.snapshot().asList());
+    }
+
+    /**
+     * A key whose comparisons can be held up at a gate, or fail, to control when a combiner finishes.
+     */
+    private static final class Key implements Comparable<Key> {
+        private final int value;
+        private final CountDownLatch entered;
+        private final CountDownLatch gate;
+
+        private Key(int value) {
+            this(value, null, null);
+        }
+
+        private Key(int value, CountDownLatch entered, CountDownLatch gate) {
+            this.value = value;
+            this.entered = entered;
+            this.gate = gate;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            if (value < 0) {
+                throw new IllegalStateException("Cannot compare " + value);
+            }
+            if (gate != null) {
+                entered.countDown();
+                try {
+                    gate.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return Integer.compare(value, other.value);
+        }
+    }
+
+    /**
+     * Start adding the given key on a new thread.
+     */
+    private static FutureTask<Boolean> startAdd(ConcurrentTreap<Key> treap, Key key, List<Thread> threads) {
+        FutureTask<Boolean> task = new FutureTask<>(() -> treap.add(key));
+        Thread thread = new Thread(task);
+        thread.start();
+        threads.add(thread);
+        return task;
+    }
+
+    /**
+     * Wait until each of the given threads has queued its element and parked behind the combiner.
+     */
+    private static void awaitParked(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentAddsArePublishedTogether() throws Exception {
+        ConcurrentTreap<Key> treap = new ConcurrentTreap<>(Arrays.asList(new Key(0)));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Thread> combiner = new ArrayList<>();
+        FutureTask<Boolean> first = startAdd(treap, new Key(1, entered, gate), combiner);
+        Assertions.assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        // While the first add is combining, the others queue behind it and are published as one batch.
+        List<Thread> waiters = new ArrayList<>();
+        List<FutureTask<Boolean>> rest = new ArrayList<>();
+        for (int i = 2; i < 2 + THREADS; i++) {
+            rest.add(startAdd(treap, new Key(i), waiters));
+        }
+        rest.add(startAdd(treap, new Key(1), waiters));
+        awaitParked(waiters);
+        gate.countDown();
+
+        Assertions.assertTrue(first.get(10, TimeUnit.SECONDS));
+        for (int i = 0; i < THREADS; i++) {
+            Assertions.assertTrue(rest.get(i).get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertFalse(rest.get(THREADS).get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(2 + THREADS, treap.size());
+        Assertions.assertEquals(2, treap.publishCount());
+    }
+
+    @Test
+    void testFailedAddDoesNotFailItsBatch() throws Exception {
+        ConcurrentTreap<Key> treap = new ConcurrentTreap<>(Arrays.asList(new Key(0)));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Thread> combiner = new ArrayList<>();
+        FutureTask<Boolean> first = startAdd(treap, new Key(1, entered, gate), combiner);
+        Assertions.assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        List<Thread> waiters = new ArrayList<>();
+        FutureTask<Boolean> failing = startAdd(treap, new Key(-1), waiters);
+        FutureTask<Boolean> passing = startAdd(treap, new Key(2), waiters);
+        awaitParked(waiters);
+        gate.countDown();
+
+        Assertions.assertTrue(first.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(passing.get(10, TimeUnit.SECONDS));
+        ExecutionException failure =
+                Assertions.assertThrows(ExecutionException.class, () -> failing.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(failure.getCause() instanceof IllegalStateException);
+        Assertions.assertEquals(3, treap.size());
+    }
+
+    @Test
+    void testLargeBatchRetriesAreBounded() throws Exception {
+        ConcurrentTreap<Integer> treap = new ConcurrentTreap<>();
+        List<Integer> batch = IntStream.range(0, 1 << 16).map(i -> -1 - i).boxed().collect(Collectors.toList());
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS - 1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS - 1; t++) {
+                final int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = thread; !done.get(); i += THREADS) {
+                        treap.add(i);
+                    }
+                }));
+            }
+
+            AtomicInteger attempts = new AtomicInteger();
+            Assertions.assertTrue(treap.update(version -> {
+                attempts.incrementAndGet();
+                PersistentTreap<Integer> next = version;
+                for (Integer item : batch) {
+                    next = next.add(item);
+                }
+                return next;
+            }));
+            done.set(true);
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+
+            // Once queued, the batch can only lose to each of the other writers once.
+            Assertions.assertTrue(attempts.get() <= ConcurrentTreap.OPTIMISTIC_ATTEMPTS + THREADS - 1,
+                                  "Batch was derived " + attempts.get() + " times");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertTrue(treap.containsAll(batch));
+    }
+
+    @Test
+    void testSubclassElements() {
+        ConcurrentTreap<Date> treap = new ConcurrentTreap<>(Arrays.asList(new Date(1000), new Date(2000)));
+        Assertions.assertTrue(treap.contains(new java.sql.Date(2000)));
+        Assertions.assertTrue(treap.remove(new java.sql.Date(1000)));
+        Assertions.assertTrue(treap.removeAll(Arrays.asList(new java.sql.Date(2000))));
+        Assertions.assertTrue(treap.isEmpty());
+        Assertions.assertFalse(treap.contains(new java.sql.Date(2000)));
+    }
+}
@@ -0,0 +1,136 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+class IntTreapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static TreeSet<Integer> randomSet(int size) {
+        final TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < size) {
+            set.add(random.nextInt());
+        }
+        return set;
+    }
+
+    @Test
+    void testRandomOperations() {
+        IntTreap treap = new IntTreap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = random.nextInt(512);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Assertions.assertEquals(expected.add(value), treap.add(value));
+                    break;
+                case 1:
+                    Assertions.assertEquals(expected.remove(value), treap.remove(value));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.contains(value), treap.contains(value));
+            }
+            Assertions.assertEquals(expected.size(), treap.size());
+        }
+        Assertions.assertArrayEquals(toArray(expected), treap.toArray());
+    }
+
+    @Test
+    void testBulkConstruction() {
+        IntTreap treap = new IntTreap(5, 3, 9, 3, 1, 5);
+        Assertions.assertArrayEquals(new int[]{1, 3, 5, 9}, treap.toArray());
+        Assertions.assertTrue(new IntTreap().isEmpty());
+    }
+
+    @Test
+    void testOrderStatistics() {
+        TreeSet<Integer> expected = randomSet(256);
+        IntTreap treap = new IntTreap(toArray(expected));
+        List<Integer> sorted = new ArrayList<>(expected);
+
+        Assertions.assertEquals(expected.first().intValue(), treap.first());
+        Assertions.assertEquals(expected.last().intValue(), treap.last());
+        for (int i = 0; i < sorted.size(); i++) {
+            Assertions.assertEquals(sorted.get(i).intValue(), treap.get(i));
+            Assertions.assertEquals(i, treap.rankOf(sorted.get(i)));
+            Assertions.assertEquals(i, treap.countLessThan(sorted.get(i)));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> treap.get(sorted.size()));
+        Assertions.assertThrows(NoSuchElementException.class, () -> new IntTreap().first());
+    }
+
+    @Test
+    void testSplitJoin() {
+        TreeSet<Integer> expected = randomSet(256);
+        IntTreap treap = new IntTreap(toArray(expected));
+        int key = treap.get(100);
+
+        IntTreap upper = treap.split(key);
+        Assertions.assertArrayEquals(toArray(new TreeSet<>(expected.headSet(key))), treap.toArray());
+        Assertions.assertArrayEquals(toArray(new TreeSet<>(expected.tailSet(key))), upper.toArray());
+
+        upper.join(treap);
+        Assertions.assertTrue(treap.isEmpty());
+        Assertions.assertArrayEquals(toArray(expected), upper.toArray());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> upper.join(new IntTreap(key)));
+    }
+
+    @Test
+    void testIteratorRemove() {
+        TreeSet<Integer> expected = randomSet(256);
+        IntTreap treap = new IntTreap(toArray(expected));
+        PrimitiveIterator.OfInt iterator = treap.iterator();
+        Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+        while (iterator.hasNext()) {
+            int next = iterator.nextInt();
+            if ((next & 1) == 0) {
+                iterator.remove();
+                expected.remove(next);
+            }
+        }
+        Assertions.assertArrayEquals(toArray(expected), treap.toArray());
+        Assertions.assertThrows(NoSuchElementException.class, iterator::nextInt);
+    }
+
+    @Test
+    void testStreams() {
+        TreeSet<Integer> expected = randomSet(4096);
+        IntTreap treap = new IntTreap(toArray(expected));
+
+        Assertions.assertArrayEquals(toArray(expected), treap.stream().toArray());
+        Assertions.assertArrayEquals(toArray(expected), treap.parallelStream().toArray());
+        Assertions.assertEquals(expected.stream().mapToLong(Integer::longValue).sum(),
+                                treap.parallelStream().asLongStream().sum());
+    }
+
+    @Test
+    void testSpliterator() {
+        IntTreap treap = new IntTreap(toArray(randomSet(101)));
+        Spliterator.OfInt spliterator = treap.spliterator();
+        Assertions.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.SIZED));
+
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        Assertions.assertNotNull(prefix);
+        Assertions.assertEquals(50, prefix.estimateSize());
+        Assertions.assertEquals(51, spliterator.estimateSize());
+
+        List<Integer> collected = new ArrayList<>();
+        prefix.forEachRemaining((int value) -> collected.add(value));
+        spliterator.forEachRemaining((int value) -> collected.add(value));
+        Assertions.assertEquals(treap.stream().boxed().collect(Collectors.toList()), collected);
+    }
+}
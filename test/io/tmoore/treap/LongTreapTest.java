@@ -0,0 +1,136 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+class LongTreapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+
+    private static long[] toArray(TreeSet<Long> set) {
+        return set.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static TreeSet<Long> randomSet(int size) {
+        final TreeSet<Long> set = new TreeSet<>();
+        while (set.size() < size) {
+            set.add(random.nextLong());
+        }
+        return set;
+    }
+
+    @Test
+    void testRandomOperations() {
+        LongTreap treap = new LongTreap();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long value = random.nextInt(512);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Assertions.assertEquals(expected.add(value), treap.add(value));
+                    break;
+                case 1:
+                    Assertions.assertEquals(expected.remove(value), treap.remove(value));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.contains(value), treap.contains(value));
+            }
+            Assertions.assertEquals(expected.size(), treap.size());
+        }
+        Assertions.assertArrayEquals(toArray(expected), treap.toArray());
+    }
+
+    @Test
+    void testBulkConstruction() {
+        LongTreap treap = new LongTreap(5, 3, 9, 3, 1, 5);
+        Assertions.assertArrayEquals(new long[]{1, 3, 5, 9}, treap.toArray());
+        Assertions.assertTrue(new LongTreap().isEmpty());
+    }
+
+    @Test
+    void testOrderStatistics() {
+        TreeSet<Long> expected = randomSet(256);
+        LongTreap treap = new LongTreap(toArray(expected));
+        List<Long> sorted = new ArrayList<>(expected);
+
+        Assertions.assertEquals(expected.first().longValue(), treap.first());
+        Assertions.assertEquals(expected.last().longValue(), treap.last());
+        for (int i = 0; i < sorted.size(); i++) {
+            Assertions.assertEquals(sorted.get(i).longValue(), treap.get(i));
+            Assertions.assertEquals(i, treap.rankOf(sorted.get(i)));
+            Assertions.assertEquals(i, treap.countLessThan(sorted.get(i)));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> treap.get(sorted.size()));
+        Assertions.assertThrows(NoSuchElementException.class, () -> new LongTreap().first());
+    }
+
+    @Test
+    void testSplitJoin() {
+        TreeSet<Long> expected = randomSet(256);
+        LongTreap treap = new LongTreap(toArray(expected));
+        long key = treap.get(100);
+
+        LongTreap upper = treap.split(key);
+        Assertions.assertArrayEquals(toArray(new TreeSet<>(expected.headSet(key))), treap.toArray());
+        Assertions.assertArrayEquals(toArray(new TreeSet<>(expected.tailSet(key))), upper.toArray());
+
+        upper.join(treap);
+        Assertions.assertTrue(treap.isEmpty());
+        Assertions.assertArrayEquals(toArray(expected), upper.toArray());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> upper.join(new LongTreap(key)));
+    }
+
+    @Test
+    void testIteratorRemove() {
+        TreeSet<Long> expected = randomSet(256);
+        LongTreap treap = new LongTreap(toArray(expected));
+        PrimitiveIterator.OfLong iterator = treap.iterator();
+        Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+        while (iterator.hasNext()) {
+            long next = iterator.nextLong();
+            if ((next & 1) == 0) {
+                iterator.remove();
+                expected.remove(next);
+            }
+        }
+        Assertions.assertArrayEquals(toArray(expected), treap.toArray());
+        Assertions.assertThrows(NoSuchElementException.class, iterator::nextLong);
+    }
+
+    @Test
+    void testStreams() {
+        TreeSet<Long> expected = randomSet(4096);
+        LongTreap treap = new LongTreap(toArray(expected));
+
+        Assertions.assertArrayEquals(toArray(expected), treap.stream().toArray());
+        Assertions.assertArrayEquals(toArray(expected), treap.parallelStream().toArray());
+        Assertions.assertEquals(expected.stream().mapToLong(Long::longValue).sum(),
+                                treap.parallelStream().sum());
+    }
+
+    @Test
+    void testSpliterator() {
+        LongTreap treap = new LongTreap(toArray(randomSet(101)));
+        Spliterator.OfLong spliterator = treap.spliterator();
+        Assertions.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.SIZED));
+
+        Spliterator.OfLong prefix = spliterator.trySplit();
+        Assertions.assertNotNull(prefix);
+        Assertions.assertEquals(50, prefix.estimateSize());
+        Assertions.assertEquals(51, spliterator.estimateSize());
+
+        List<Long> collected = new ArrayList<>();
+        prefix.forEachRemaining((long value) -> collected.add(value));
+        spliterator.forEachRemaining((long value) -> collected.add(value));
+        Assertions.assertEquals(treap.stream().boxed().collect(Collectors.toList()), collected);
+    }
+}
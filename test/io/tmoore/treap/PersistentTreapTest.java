@@ -0,0 +1,111 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+class PersistentTreapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+
+    @Test
+    void testRandomOperations() {
+        PersistentTreap<Integer> treap = PersistentTreap.empty();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = random.nextInt(512);
+            switch (random.nextInt(3)) {
+                case 0: {
+                    PersistentTreap<Integer> next = treap.add(value);
+                    Assertions.assertEquals(expected.add(value), next != treap);
+                    treap = next;
+                    break;
+                }
+                case 1: {
+                    PersistentTreap<Integer> next = treap.remove(value);
+                    Assertions.assertEquals(expected.remove(value), next != treap);
+                    treap = next;
+                    break;
+                }
+                default:
+                    Assertions.assertEquals(expected.contains(value), treap.contains(value));
+            }
+            Assertions.assertEquals(expected.size(), treap.size());
+        }
+        Assertions.assertEquals(new ArrayList<>(expected), treap.asList());
+    }
+
+    @Test
+    void testVersionsAreIndependent() {
+        List<PersistentTreap<Integer>> versions = new ArrayList<>();
+        List<TreeSet<Integer>> expected = new ArrayList<>();
+        PersistentTreap<Integer> treap = PersistentTreap.empty();
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int i = 0; i < 256; i++) {
+            int value = random.nextInt(128);
+            if (random.nextBoolean()) {
+                treap = treap.add(value);
+                set.add(value);
+            }
+            else {
+                treap = treap.remove(value);
+                set.remove(value);
+            }
+            versions.add(treap);
+            expected.add(new TreeSet<>(set));
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            Assertions.assertEquals(new ArrayList<>(expected.get(i)), versions.get(i).asList());
+        }
+    }
+
+    @Test
+    void testBulkConstruction() {
+        PersistentTreap<Integer> treap = PersistentTreap.copyOf(Arrays.asList(5, 3, 9, 3, 1, 5));
+        Assertions.assertEquals(Arrays.asList(1, 3, 5, 9), treap.asList());
+        Assertions.assertEquals(Arrays.asList(1, 3, 4, 5, 9), treap.add(4).asList());
+        Assertions.assertEquals(Arrays.asList(1, 5, 9), treap.remove(3).asList());
+        Assertions.assertEquals(Arrays.asList(1, 3, 5, 9), treap.asList());
+        Assertions.assertTrue(PersistentTreap.copyOf(Collections.<Integer>emptyList()).isEmpty());
+    }
+
+    @Test
+    void testOrderStatistics() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        while (expected.size() < 1024) {
+            expected.add(random.nextInt());
+        }
+        PersistentTreap<Integer> treap = PersistentTreap.copyOf(expected);
+
+        Assertions.assertEquals(expected.first(), treap.first());
+        Assertions.assertEquals(expected.last(), treap.last());
+        List<Integer> ordered = new ArrayList<>(expected);
+        for (int i = 0; i < ordered.size(); i++) {
+            Assertions.assertEquals(ordered.get(i), treap.get(i));
+            Assertions.assertEquals(i, treap.countLessThan(ordered.get(i)));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> treap.get(ordered.size()));
+        Assertions.assertThrows(NoSuchElementException.class, () -> PersistentTreap.<Integer>empty().first());
+    }
+
+    @Test
+    void testStreamAndEquality() {
+        PersistentTreap<Integer> a = PersistentTreap.copyOf(Arrays.asList(4, 2, 8, 6));
+        PersistentTreap<Integer> b = PersistentTreap.<Integer>empty().add(8).add(2).add(6).add(4);
+        Assertions.assertEquals(a, b);
+        Assertions.assertEquals(a.hashCode(), b.hashCode());
+        Assertions.assertEquals(new TreeSet<>(a.asList()).hashCode(), a.hashCode());
+        Assertions.assertNotEquals(a, b.remove(6));
+        Assertions.assertEquals(Arrays.asList(2, 4, 6, 8), a.stream().collect(Collectors.toList()));
+        Assertions.assertEquals("[2, 4, 6, 8]", a.toString());
+    }
+}
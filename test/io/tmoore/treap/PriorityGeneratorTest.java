@@ -0,0 +1,67 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+class PriorityGeneratorTest {
+    private static final int SAMPLES = 10_000;
+
+    @Test
+    void testThreadLocalRange() {
+        PriorityGenerator generator = PriorityGenerator.threadLocal();
+        for (int i = 0; i < SAMPLES; i++) {
+            int priority = generator.nextPriority();
+            Assertions.assertTrue(priority >= PriorityGenerator.MIN_PRIORITY);
+            Assertions.assertTrue(priority <= PriorityGenerator.MAX_PRIORITY);
+        }
+    }
+
+    @Test
+    void testSeededIsDeterministic() {
+        long seed = ThreadLocalRandom.current().nextLong();
+        PriorityGenerator a = PriorityGenerator.seeded(seed);
+        PriorityGenerator b = PriorityGenerator.seeded(seed);
+        for (int i = 0; i < SAMPLES; i++) {
+            int priority = a.nextPriority();
+            Assertions.assertEquals(priority, b.nextPriority());
+            Assertions.assertTrue(priority >= PriorityGenerator.MIN_PRIORITY);
+            Assertions.assertTrue(priority <= PriorityGenerator.MAX_PRIORITY);
+        }
+    }
+
+    @Test
+    void testSeededTreapShapeIsReproducible() {
+        long seed = ThreadLocalRandom.current().nextLong();
+        Random random = new Random(seed);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < SAMPLES; i++) {
+            values.add(random.nextInt());
+        }
+
+        Treap<Integer> a = new Treap<>(PriorityGenerator.seeded(seed));
+        Treap<Integer> b = new Treap<>(PriorityGenerator.seeded(seed));
+        a.addAll(values);
+        b.addAll(values);
+        Assertions.assertEquals(a.toString(), b.toString());
+
+        Treap<Integer> bulkA = new Treap<>(values, PriorityGenerator.seeded(seed));
+        Treap<Integer> bulkB = new Treap<>(values, PriorityGenerator.seeded(seed));
+        Assertions.assertEquals(bulkA.toString(), bulkB.toString());
+    }
+
+    @Test
+    void testCustomGenerator() {
+        // A constant priority degenerates the heap order, but the treap must stay a valid search tree.
+        Treap<Integer> treap = new Treap<>(() -> 1);
+        for (int i = 0; i < 100; i++) {
+            treap.add(i % 2 == 0 ? i : -i);
+        }
+        Assertions.assertEquals(100, treap.size());
+        TreapNodeTest.assertInvariants(treap.getRoot());
+    }
+}
@@ -0,0 +1,175 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class ShardedTreapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+    private static final int THREADS = 8;
+
+    @Test
+    void testRandomOperations() {
+        ShardedTreap<Integer> treap = new ShardedTreap<>(16);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = random.nextInt(512);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Assertions.assertEquals(expected.add(value), treap.add(value));
+                    break;
+                case 1:
+                    Assertions.assertEquals(expected.remove(value), treap.remove(value));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.contains(value), treap.contains(value));
+            }
+            Assertions.assertEquals(expected.size(), treap.size());
+        }
+        Assertions.assertEquals(new ArrayList<>(expected), new ArrayList<>(treap));
+        Assertions.assertThrows(ClassCastException.class, () -> treap.contains("not an integer"));
+    }
+
+    @Test
+    void testShardsSplitAndMerge() {
+        ShardedTreap<Integer> treap = new ShardedTreap<>(64);
+        for (int i = 0; i < 4096; i++) {
+            treap.add(i);
+        }
+        Assertions.assertTrue(treap.shardCount() >= 4096 / 64, "Shards: " + treap.shardCount());
+        Assertions.assertEquals(0, treap.first());
+        Assertions.assertEquals(4095, treap.last());
+
+        for (int i = 0; i < 4000; i++) {
+            treap.remove(i);
+        }
+        Assertions.assertTrue(treap.shardCount() <= 4, "Shards: " + treap.shardCount());
+        Assertions.assertEquals(IntStream.range(4000, 4096).boxed().collect(Collectors.toList()),
+                                new ArrayList<>(treap));
+        Assertions.assertEquals(4000, treap.first());
+
+        treap.clear();
+        Assertions.assertEquals(1, treap.shardCount());
+        Assertions.assertThrows(NoSuchElementException.class, treap::first);
+        Assertions.assertThrows(NoSuchElementException.class, treap::last);
+    }
+
+    @Test
+    void testEmptyShards() {
+        ShardedTreap<Integer> empty = new ShardedTreap<>();
+        Assertions.assertFalse(empty.iterator().hasNext());
+        Assertions.assertEquals("[]", empty.toString());
+        Assertions.assertEquals(0, empty.size());
+
+        // Ascending keys leave shards of four: 0..30, 40..70, 80..110, 120..150, ...
+        ShardedTreap<Integer> treap = new ShardedTreap<>(8);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            treap.add(i * 10);
+            expected.add(i * 10);
+        }
+        // Grow the shard above 80..110 so that emptying it does not merge the two.
+        treap.add(125);
+        treap.add(135);
+        expected.add(13, 125);
+        expected.add(15, 135);
+        int shards = treap.shardCount();
+        for (int i = 80; i <= 110; i += 10) {
+            Assertions.assertTrue(treap.remove(i));
+            expected.remove(Integer.valueOf(i));
+        }
+        Assertions.assertEquals(shards, treap.shardCount());
+
+        Assertions.assertEquals(expected, new ArrayList<>(treap));
+        Assertions.assertEquals(expected.toString(), treap.toString());
+        Assertions.assertEquals(expected.size(), treap.size());
+        Assertions.assertFalse(treap.contains(90));
+    }
+
+    @Test
+    void testSubclassElements() {
+        ShardedTreap<Date> treap = new ShardedTreap<>(8);
+        for (int i = 0; i < 64; i++) {
+            treap.add(new Date(i * 1000L));
+        }
+        Assertions.assertTrue(treap.shardCount() > 1, "Shards: " + treap.shardCount());
+
+        Assertions.assertTrue(treap.add(new Timestamp(1500)));
+        Assertions.assertTrue(treap.contains(new Timestamp(1500)));
+        Assertions.assertTrue(treap.contains(new Timestamp(2000)));
+        Assertions.assertTrue(treap.remove(new Timestamp(3000)));
+        Assertions.assertFalse(treap.contains(new Date(3000)));
+        Assertions.assertEquals(64, treap.size());
+        Assertions.assertThrows(ClassCastException.class, () -> treap.remove("not a date"));
+    }
+
+    @Test
+    void testIteratorRemove() {
+        ShardedTreap<Integer> treap = new ShardedTreap<>(8);
+        for (int i = 0; i < 100; i++) {
+            treap.add(i);
+        }
+        Iterator<Integer> iterator = treap.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals(IntStream.range(0, 50).map(i -> i * 2 + 1).boxed().collect(Collectors.toList()),
+                                new ArrayList<>(treap));
+    }
+
+    @Test
+    void testConcurrentWriters() throws Exception {
+        ShardedTreap<Integer> treap = new ShardedTreap<>(256);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        Assertions.assertTrue(treap.add(i * THREADS + thread));
+                        Assertions.assertTrue(treap.contains(i * THREADS + thread));
+                    }
+                    for (int i = 0; i < OPERATIONS; i += 2) {
+                        Assertions.assertTrue(treap.remove(i * THREADS + thread));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        List<Integer> expected = IntStream.range(0, OPERATIONS * THREADS)
+                                          .filter(i -> (i / THREADS) % 2 == 1)
+                                          .boxed()
+                                          .collect(Collectors.toList());
+        Assertions.assertEquals(expected.size(), treap.size());
+        Assertions.assertEquals(expected, new ArrayList<>(treap));
+    }
+}
@@ -14,6 +14,9 @@ class TreapBaseTest {
 
     @BeforeEach
     void setupEach() {
+        // TreapTest shares one instance across tests, so start every test from a fresh fixture.
+        randomData.clear();
+        treap.clear();
         while (randomData.size() < RANDOM_DATA_SIZE) {
             randomData.add(random.nextInt());
         }
@@ -0,0 +1,265 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+class TreapCacheTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+    private static final int CAPACITY = 64;
+
+    /**
+     * Small enough that every use is its own epoch, so eviction is exactly least-recently-used.
+     */
+    private static final int SMALL_CAPACITY = 15;
+
+    /**
+     * A least-recently-used cache in the usual style, to check against.
+     */
+    private static <K, V> Map<K, V> lruReference(int capacity) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Test
+    void testSmallCacheMatchesLinkedHashMap() {
+        TreapCache<Integer, Integer> cache = new TreapCache<>(SMALL_CAPACITY);
+        Map<Integer, Integer> expected = lruReference(SMALL_CAPACITY);
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(4 * SMALL_CAPACITY);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Assertions.assertEquals(expected.put(key, i), cache.put(key, i));
+                    break;
+                case 2:
+                    Assertions.assertEquals(expected.remove(key), cache.remove(key));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.get(key), cache.get(key));
+            }
+            Assertions.assertEquals(expected.size(), cache.size());
+            if (!expected.isEmpty()) {
+                Assertions.assertEquals(expected.keySet().iterator().next(), cache.eldestKey());
+            }
+            Assertions.assertTrue(cache.isValid());
+        }
+        Assertions.assertEquals(new ArrayList<>(new TreeMap<>(expected).entrySet()),
+                                new ArrayList<>(cache.entrySet()));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvictsFromOldestEpoch() {
+        TreapCache<Integer, Integer> cache = new TreapCache<>(CAPACITY);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Map<Integer, Integer> lastUse = new HashMap<>();
+        int clock = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(256);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    if (!expected.containsKey(key) && expected.size() == CAPACITY) {
+                        Integer evicted = cache.eldestKey();
+                        int oldest = expected.keySet().stream().mapToInt(lastUse::get).min().getAsInt();
+                        Assertions.assertTrue(lastUse.get(evicted) - oldest < CAPACITY / 8,
+                                              "Evicted an entry used " + (lastUse.get(evicted) - oldest)
+                                              + " uses after the least recently used");
+                        expected.remove(evicted);
+                    }
+                    Assertions.assertEquals(expected.put(key, i), cache.put(key, i));
+                    lastUse.put(key, ++clock);
+                    break;
+                case 2:
+                    Assertions.assertEquals(expected.remove(key), cache.remove(key));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.get(key), cache.get(key));
+                    if (expected.containsKey(key)) {
+                        lastUse.put(key, ++clock);
+                    }
+            }
+            Assertions.assertEquals(expected.size(), cache.size());
+            Assertions.assertTrue(cache.isValid());
+        }
+        Assertions.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(cache.entrySet()));
+    }
+
+    @Test
+    void testAscendingKeysKeepTheTreeShallow() {
+        int capacity = 1 << 16;
+        TreapCache<Integer, Integer> cache = new TreapCache<>(capacity);
+        Assertions.assertTimeout(Duration.ofSeconds(10), () -> {
+            for (int key = 0; key < 4 * capacity; key++) {
+                cache.put(key, key);
+                if (key % 3 == 0) {
+                    cache.get(key / 2);
+                }
+            }
+        });
+
+        // An exact least-recently-used order would leave a path through every entry. Each epoch held adds
+        // about a random treap's path, so allow 16 times the depth of a balanced tree.
+        Assertions.assertEquals(capacity, cache.size());
+        Assertions.assertTrue(cache.depth() < 16 * 16, "Depth: " + cache.depth());
+        Assertions.assertTrue(cache.isValid());
+        Assertions.assertEquals(capacity, cache.range(0, true, 4 * capacity, false).size());
+    }
+
+    @Test
+    void testEpochsAreRenumbered() {
+        TreapCache<Integer, Integer> cache = new TreapCache<>(CAPACITY);
+        for (int key = 0; key < 4 * CAPACITY; key++) {
+            cache.put(random.nextInt(4 * CAPACITY), key);
+        }
+        Integer eldest = cache.eldestKey();
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(cache.entrySet());
+
+        cache.renumber();
+        Assertions.assertTrue(cache.isValid());
+        Assertions.assertEquals(eldest, cache.eldestKey());
+        Assertions.assertEquals(entries, new ArrayList<>(cache.entrySet()));
+
+        // Entries used after renumbering are in a newer epoch than every one before.
+        for (Map.Entry<Integer, Integer> entry : entries) {
+            if (!entry.getKey().equals(eldest)) {
+                cache.get(entry.getKey());
+            }
+        }
+        Assertions.assertEquals(eldest, cache.eldestKey());
+        Assertions.assertTrue(cache.isValid());
+    }
+
+    @Test
+    void testLeastFrequentlyUsedEviction() {
+        TreapCache<String, Integer> cache =
+                new TreapCache<>(3, TreapCache.Policy.LEAST_FREQUENTLY_USED, PriorityGenerator.seeded(3));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        for (int i = 0; i < 3; i++) {
+            cache.get("a");
+            cache.get("c");
+        }
+        cache.get("b");
+
+        // b has been used twice, a and c four times each.
+        Assertions.assertEquals("b", cache.eldestKey());
+        cache.put("d", 4);
+        Assertions.assertEquals(Arrays.asList("a", "c", "d"), new ArrayList<>(cache.keySet()));
+
+        // The new entry has been used once, so it goes next, however recently it arrived.
+        Assertions.assertEquals("d", cache.eldestKey());
+        Assertions.assertFalse(cache.containsKey("b"));
+        Assertions.assertTrue(cache.isValid());
+    }
+
+    @Test
+    void testContainsKeyIsNotAUse() {
+        TreapCache<Integer, String> cache = new TreapCache<>(2);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        Assertions.assertTrue(cache.containsKey(1));
+        cache.put(3, "three");
+        Assertions.assertFalse(cache.containsKey(1));
+        Assertions.assertEquals("two", cache.get(2));
+        cache.put(4, "four");
+        Assertions.assertEquals(Arrays.asList(2, 4), new ArrayList<>(cache.keySet()));
+    }
+
+    @Test
+    void testOrderedQueries() {
+        TreapCache<Integer, String> cache = new TreapCache<>(CAPACITY);
+        for (int key = 0; key < 20; key += 2) {
+            cache.put(key, Integer.toString(key));
+        }
+        Integer eldest = cache.eldestKey();
+
+        Assertions.assertEquals(0, cache.firstKey());
+        Assertions.assertEquals(18, cache.lastKey());
+        Assertions.assertEquals(6, cache.ceilingKey(5));
+        Assertions.assertEquals(6, cache.ceilingKey(6));
+        Assertions.assertNull(cache.ceilingKey(19));
+        Assertions.assertEquals(4, cache.floorKey(5));
+        Assertions.assertNull(cache.floorKey(-1));
+
+        List<Map.Entry<Integer, String>> range = cache.range(4, false, 10, true);
+        Assertions.assertEquals(Arrays.asList(new SimpleImmutableEntry<>(6, "6"),
+                                              new SimpleImmutableEntry<>(8, "8"),
+                                              new SimpleImmutableEntry<>(10, "10")), range);
+        Assertions.assertTrue(cache.range(5, true, 5, true).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cache.range(3, true, 2, true));
+        Assertions.assertTrue(cache.range(30, true, 40, true).isEmpty());
+        Assertions.assertTrue(cache.range(-10, true, -1, true).isEmpty());
+        Assertions.assertTrue(cache.range(18, false, 40, true).isEmpty());
+        Assertions.assertEquals(1, cache.range(18, true, 40, true).size());
+        Assertions.assertTrue(new TreapCache<Integer, String>(CAPACITY).range(0, true, 10, true).isEmpty());
+
+        // Ordered queries are not uses, so the same entry is still the next to go.
+        Assertions.assertEquals(eldest, cache.eldestKey());
+    }
+
+    @Test
+    void testIterator() {
+        TreapCache<Integer, Integer> cache = new TreapCache<>(CAPACITY);
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, key);
+        }
+
+        Iterator<Map.Entry<Integer, Integer>> iterator = cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getKey() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals(Arrays.asList(1, 3, 5, 7, 9), new ArrayList<>(cache.keySet()));
+        Assertions.assertTrue(cache.isValid());
+
+        Iterator<Integer> keys = cache.keySet().iterator();
+        keys.next();
+        cache.get(5);
+        Assertions.assertThrows(ConcurrentModificationException.class, keys::next);
+    }
+
+    @Test
+    void testCapacity() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TreapCache<Integer, Integer>(0));
+        TreapCache<Integer, Integer> cache = new TreapCache<>(1);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(2, cache.firstKey());
+        Assertions.assertEquals(1, cache.getCapacity());
+        Assertions.assertEquals(TreapCache.Policy.LEAST_RECENTLY_USED, cache.getPolicy());
+    }
+
+    @Test
+    void testSubclassKeys() {
+        TreapCache<Date, String> cache = new TreapCache<>(CAPACITY);
+        cache.put(new Date(1000), "a");
+        cache.put(new Date(2000), "b");
+        Assertions.assertTrue(cache.containsKey(new java.sql.Date(1000)));
+        Assertions.assertEquals("b", cache.get(new java.sql.Date(2000)));
+        Assertions.assertEquals("a", cache.remove(new java.sql.Date(1000)));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertThrows(ClassCastException.class, () -> cache.get("not a date"));
+    }
+}
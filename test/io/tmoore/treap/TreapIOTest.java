@@ -0,0 +1,178 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class TreapIOTest {
+    private static final Random random = new Random();
+
+    @TempDir
+    Path directory;
+
+    private static <T> List<T> inOrder(Treap<T> treap) {
+        return treap.stream().collect(Collectors.toList());
+    }
+
+    @Test
+    void testIntegerRoundTrip() throws IOException {
+        TreeSet<Integer> expected = new TreeSet<>(Arrays.asList(Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE));
+        while (expected.size() < 4096) {
+            expected.add(random.nextInt());
+        }
+        Path file = directory.resolve("integers.treap");
+        TreapIO.write(new Treap<>(expected), ElementCodec.integers(), file);
+
+        Treap<Integer> loaded = TreapIO.read(ElementCodec.integers(), file);
+        Assertions.assertEquals(new ArrayList<>(expected), inOrder(loaded));
+        TreapNodeTest.assertInvariants(loaded.getRoot());
+    }
+
+    @Test
+    void testLongAndStringRoundTrip() throws IOException {
+        List<Long> longs = Arrays.asList(Long.MIN_VALUE, -5L, 0L, 1L << 40, Long.MAX_VALUE);
+        Path file = directory.resolve("longs.treap");
+        TreapIO.write(new Treap<>(longs), ElementCodec.longs(), file);
+        Assertions.assertEquals(longs, inOrder(TreapIO.read(ElementCodec.longs(), file)));
+
+        List<String> strings = Arrays.asList("", "apple", "applesauce", "apply", "banana", "🍌", "🍍");
+        file = directory.resolve("strings.treap");
+        TreapIO.write(new Treap<>(strings), ElementCodec.strings(), file);
+        Assertions.assertEquals(new ArrayList<>(new TreeSet<>(strings)),
+                                inOrder(TreapIO.read(ElementCodec.strings(), file)));
+    }
+
+    @Test
+    void testComparatorOrderedRoundTrip() throws IOException {
+        Treap<String> strings = new Treap<>(Comparator.reverseOrder());
+        strings.addAll(Arrays.asList("apple", "applesauce", "apply", "banana", ""));
+        Path file = directory.resolve("descending.treap");
+        TreapIO.write(strings, ElementCodec.strings(), file);
+
+        Treap<String> loaded = TreapIO.read(ElementCodec.strings(), Comparator.reverseOrder(), file);
+        Assertions.assertEquals(inOrder(strings), inOrder(loaded));
+        Assertions.assertEquals(Comparator.reverseOrder(), loaded.comparator());
+        TreapNodeTest.assertInvariants(loaded.getRoot(), Comparator.reverseOrder());
+        loaded.add("cherry");
+        Assertions.assertEquals("cherry", loaded.first());
+
+        // The comparator is not stored, so reading in natural order finds the elements out of order.
+        Assertions.assertThrows(StreamCorruptedException.class, () -> TreapIO.read(ElementCodec.strings(), file));
+
+        Treap<Integer> integers = new Treap<>(Comparator.reverseOrder());
+        integers.addAll(Arrays.asList(Integer.MIN_VALUE, -1, 0, 7, Integer.MAX_VALUE));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TreapIO.write(integers, ElementCodec.integers(), bytes);
+        Assertions.assertEquals(inOrder(integers),
+                                inOrder(TreapIO.read(ElementCodec.integers(), Comparator.reverseOrder(),
+                                                     new ByteArrayInputStream(bytes.toByteArray()),
+                                                     PriorityGenerator.threadLocal())));
+    }
+
+    @Test
+    void testStreamsAndEmptyTreap() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TreapIO.write(new Treap<Integer>(), ElementCodec.integers(), bytes);
+        Treap<Integer> loaded = TreapIO.read(ElementCodec.integers(), new ByteArrayInputStream(bytes.toByteArray()),
+                                             PriorityGenerator.threadLocal());
+        Assertions.assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    void testDenseKeysAreCompact() throws IOException {
+        Treap<Integer> treap = new Treap<>(IntStream.range(0, 10_000).boxed().collect(Collectors.toList()));
+        Path file = directory.resolve("dense.treap");
+        TreapIO.write(treap, ElementCodec.integers(), file);
+
+        // Header, one full integer, then a one-byte gap per element.
+        Assertions.assertEquals(9 + 4 + 9_999, Files.size(file));
+    }
+
+    @Test
+    void testMalformedInput() throws IOException {
+        Path file = directory.resolve("garbage.treap");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        Assertions.assertThrows(StreamCorruptedException.class, () -> TreapIO.read(ElementCodec.integers(), file));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x54524550);
+        out.writeByte(1);
+        out.writeInt(2);
+        out.writeInt(5);
+        out.writeInt(3);
+        ElementCodec<Integer> fixedWidth = new ElementCodec<Integer>() {
+            @Override
+            public void write(Integer previous, Integer value, java.io.DataOutput out) throws IOException {
+                out.writeInt(value);
+            }
+
+            @Override
+            public Integer read(Integer previous, java.io.DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+        Assertions.assertThrows(StreamCorruptedException.class,
+                                () -> TreapIO.read(fixedWidth, new ByteArrayInputStream(bytes.toByteArray()),
+                                                   PriorityGenerator.threadLocal()));
+
+        Path truncated = directory.resolve("truncated.treap");
+        Files.write(truncated, Arrays.copyOf(bytes.toByteArray(), bytes.size() - 2));
+        Assertions.assertThrows(java.io.EOFException.class, () -> TreapIO.read(fixedWidth, truncated));
+
+        // Gaps which leave the int range in either direction are rejected rather than truncated.
+        for (long gap : new long[]{-1, 1L << 32}) {
+            ByteArrayOutputStream outOfRange = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(outOfRange);
+            data.writeInt(0x54524550);
+            data.writeByte(1);
+            data.writeInt(2);
+            data.writeInt(gap < 0 ? Integer.MIN_VALUE : 0);
+            StandardCodecs.writeVarLong(data, gap);
+            Assertions.assertThrows(StreamCorruptedException.class,
+                                    () -> TreapIO.read(ElementCodec.integers(),
+                                                       new ByteArrayInputStream(outOfRange.toByteArray()),
+                                                       PriorityGenerator.threadLocal()));
+        }
+    }
+
+    @Test
+    void testLineCodecReadsTheSameFromFilesAndStreams() throws IOException {
+        ElementCodec<String> lines = new ElementCodec<String>() {
+            @Override
+            public void write(String previous, String value, java.io.DataOutput out) throws IOException {
+                out.writeBytes(value + (value.length() % 2 == 0 ? "\n" : "\r\n"));
+            }
+
+            @Override
+            public String read(String previous, java.io.DataInput in) throws IOException {
+                return in.readLine();
+            }
+        };
+        Treap<String> treap = new Treap<>(Arrays.asList("", "alpha", "beta", "gamma", "delta\u00e9"));
+        Path file = directory.resolve("lines.treap");
+        TreapIO.write(treap, lines, file);
+
+        Assertions.assertEquals(inOrder(treap), inOrder(TreapIO.read(lines, file)));
+        try (java.io.InputStream in = Files.newInputStream(file)) {
+            Assertions.assertEquals(inOrder(treap),
+                                    inOrder(TreapIO.read(lines, in, PriorityGenerator.threadLocal())));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TreapListTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+
+    @Test
+    void testRandomOperations() {
+        TreapList<Integer> list = new TreapList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = random.nextInt();
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1: {
+                    int index = random.nextInt(expected.size() + 1);
+                    expected.add(index, value);
+                    list.add(index, value);
+                    break;
+                }
+                case 2:
+                    if (!expected.isEmpty()) {
+                        int index = random.nextInt(expected.size());
+                        Assertions.assertEquals(expected.remove(index), list.remove(index));
+                    }
+                    break;
+                default:
+                    if (!expected.isEmpty()) {
+                        int index = random.nextInt(expected.size());
+                        Assertions.assertEquals(expected.set(index, value), list.set(index, value));
+                    }
+            }
+            Assertions.assertEquals(expected.size(), list.size());
+        }
+        Assertions.assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i), list.get(i));
+        }
+    }
+
+    @Test
+    void testBounds() {
+        TreapList<String> list = new TreapList<>(Arrays.asList("a", "b", "c"));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.get(3));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.add(4, "d"));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.remove(3));
+        Assertions.assertThrows(NullPointerException.class, () -> list.add(null));
+        list.add(3, "d");
+        Assertions.assertEquals(Arrays.asList("a", "b", "c", "d"), list);
+    }
+
+    @Test
+    void testCutAndSplice() {
+        TreapList<Integer> list = new TreapList<>(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        TreapList<Integer> middle = list.cut(3, 7);
+        Assertions.assertEquals(Arrays.asList(3, 4, 5, 6), middle);
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 7, 8, 9), list);
+
+        list.splice(1, middle);
+        Assertions.assertTrue(middle.isEmpty());
+        Assertions.assertEquals(Arrays.asList(0, 3, 4, 5, 6, 1, 2, 7, 8, 9), list);
+
+        list.subList(2, 8).clear();
+        Assertions.assertEquals(Arrays.asList(0, 3, 8, 9), list);
+
+        list.addAll(2, Arrays.asList(10, 11, 12));
+        Assertions.assertEquals(Arrays.asList(0, 3, 10, 11, 12, 8, 9), list);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> list.splice(0, list));
+    }
+
+    @Test
+    void testBulkInsertDrawsFromTheListsGenerator() {
+        PriorityGenerator seeded = PriorityGenerator.seeded(11);
+        AtomicInteger draws = new AtomicInteger();
+        TreapList<Integer> list = new TreapList<>(() -> {
+            draws.incrementAndGet();
+            return seeded.nextPriority();
+        });
+        list.add(0);
+        list.addAll(Arrays.asList(1, 2, 3, 4));
+        list.addAll(1, Arrays.asList(5, 6));
+        Assertions.assertEquals(7, draws.get());
+        Assertions.assertEquals(Arrays.asList(0, 5, 6, 1, 2, 3, 4), list);
+    }
+
+    @Test
+    void testIterator() {
+        TreapList<Integer> list = new TreapList<>(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8));
+        Iterator<Integer> iterator = list.iterator();
+        Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+
+        List<Integer> seen = new ArrayList<>();
+        while (iterator.hasNext()) {
+            int next = iterator.next();
+            seen.add(next);
+            if (next % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), seen);
+        Assertions.assertEquals(Arrays.asList(1, 3, 5, 7), list);
+
+        Iterator<Integer> stale = list.iterator();
+        list.add(0, 0);
+        Assertions.assertThrows(ConcurrentModificationException.class, stale::next);
+    }
+}
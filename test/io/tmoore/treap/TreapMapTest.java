@@ -0,0 +1,146 @@
+package io.tmoore.treap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+class TreapMapTest {
+    private static final Random random = new Random();
+    private static final int OPERATIONS = 4096;
+
+    @Test
+    void testRandomOperations() {
+        TreapMap<Integer, Long> map = new TreapMap<>();
+        TreeMap<Integer, Long> expected = new TreeMap<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(512);
+            switch (random.nextInt(4)) {
+                case 0: {
+                    long value = random.nextInt(1000);
+                    Assertions.assertEquals(expected.put(key, value), map.put(key, value));
+                    break;
+                }
+                case 1:
+                    Assertions.assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                case 2: {
+                    int to = key + random.nextInt(512 - key);
+                    long delta = random.nextInt(100);
+                    expected.subMap(key, true, to, true).replaceAll((k, v) -> v + delta);
+                    map.updateRange(key, to, v -> v + delta);
+                    break;
+                }
+                default:
+                    Assertions.assertEquals(expected.get(key), map.get(key));
+                    Assertions.assertEquals(expected.containsKey(key), map.containsKey(key));
+            }
+            Assertions.assertEquals(expected.size(), map.size());
+        }
+        Assertions.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+        Assertions.assertEquals(expected, map);
+    }
+
+    @Test
+    void testUpdateRangeBounds() {
+        TreapMap<Integer, String> map = new TreapMap<>();
+        for (int key = 1; key <= 6; key++) {
+            map.put(key, "");
+        }
+        map.updateRange(2, 5, v -> v + "a");
+        map.updateRange(2, false, 5, false, v -> v + "b");
+        map.updateRange(4, true, 10, false, v -> v + "c");
+        map.updateRange(7, 9, v -> v + "d");
+
+        Assertions.assertEquals(Arrays.asList("", "a", "ab", "abc", "ac", "c"), new ArrayList<>(map.values()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.updateRange(5, 2, v -> v));
+        Assertions.assertThrows(ClassCastException.class, () -> map.get("not an integer"));
+    }
+
+    @Test
+    void testUpdatesApplyInOrder() {
+        TreapMap<Integer, Long> map = new TreapMap<>();
+        for (int key = 0; key < 1000; key++) {
+            map.put(key, 1L);
+        }
+        map.updateRange(0, 999, v -> v * 10);
+        map.updateRange(250, 749, v -> v + 1);
+        map.updateRange(0, 499, v -> v * 2);
+
+        Assertions.assertEquals(20L, map.get(100));
+        Assertions.assertEquals(22L, map.get(300));
+        Assertions.assertEquals(11L, map.get(600));
+        Assertions.assertEquals(10L, map.get(900));
+
+        map.put(300, 0L);
+        map.updateRange(0, 999, v -> v + 1);
+        Assertions.assertEquals(1L, map.get(300));
+        Assertions.assertEquals(21L, map.get(100));
+    }
+
+    @Test
+    void testIteratorRemove() {
+        TreapMap<Integer, Integer> map = new TreapMap<>();
+        for (int key = 1; key <= 8; key++) {
+            map.put(key, key);
+        }
+        map.updateRange(1, 8, v -> v * 100);
+
+        Iterator<Map.Entry<Integer, Integer>> iterator = map.entrySet().iterator();
+        Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+        List<Integer> seen = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            seen.add(entry.getValue());
+            if (entry.getKey() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals(Arrays.asList(100, 200, 300, 400, 500, 600, 700, 800), seen);
+        Assertions.assertEquals(Arrays.asList(1, 3, 5, 7), new ArrayList<>(map.keySet()));
+
+        Iterator<Integer> stale = map.keySet().iterator();
+        map.put(2, 2);
+        Assertions.assertThrows(ConcurrentModificationException.class, stale::next);
+
+        Iterator<Integer> relinked = map.keySet().iterator();
+        relinked.next();
+        map.updateRange(3, 5, v -> v + 1);
+        Assertions.assertThrows(ConcurrentModificationException.class, relinked::next);
+    }
+
+    @Test
+    void testManyPendingUpdates() {
+        TreapMap<Integer, Long> map = new TreapMap<>();
+        for (int key = 0; key < 100; key++) {
+            map.put(key, 0L);
+        }
+        // Every update covers the whole map, so they all pile up on the root until the next read.
+        for (int i = 0; i < 200_000; i++) {
+            map.updateRange(0, 99, v -> v + 1);
+        }
+        Assertions.assertEquals(200_000L, map.get(50));
+        for (long value : map.values()) {
+            Assertions.assertEquals(200_000L, value);
+        }
+    }
+
+    @Test
+    void testSubclassKeys() {
+        TreapMap<Date, String> map = new TreapMap<>();
+        map.put(new Date(1000), "a");
+        map.put(new Date(2000), "b");
+        Assertions.assertTrue(map.containsKey(new java.sql.Date(1000)));
+        Assertions.assertEquals("b", map.get(new java.sql.Date(2000)));
+        Assertions.assertEquals("a", map.remove(new java.sql.Date(1000)));
+        Assertions.assertEquals(1, map.size());
+    }
+}
@@ -0,0 +1,151 @@
+package io.tmoore.treap;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+class TreapMetricsTest {
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCounts() {
+        Treap<Integer> treap = new Treap<>();
+        treap.add(2, 30);
+        treap.add(1, 20);
+        TreapMetrics metrics = new TreapMetrics();
+        treap.setMetrics(metrics);
+        Assertions.assertSame(metrics, treap.getMetrics());
+
+        // 3 goes right of 2 and is lifted above it by one rotation.
+        treap.add(3, 40);
+        Assertions.assertEquals(1, metrics.getOperations());
+        Assertions.assertEquals(1, metrics.getPathLength());
+        Assertions.assertEquals(1, metrics.getComparisons());
+        Assertions.assertEquals(1, metrics.getRotations());
+
+        // 1 is found under 3 and 2, with one comparison at each level.
+        Assertions.assertTrue(treap.contains(1));
+        Assertions.assertEquals(3, metrics.getMaxPathLength());
+        Assertions.assertEquals(1 + 3, metrics.getComparisons());
+
+        Assertions.assertTrue(treap.remove(2));
+        Assertions.assertEquals(3, metrics.getOperations());
+        Assertions.assertEquals(1 + 3 + 2, metrics.getPathLength());
+        Assertions.assertEquals(2.0, metrics.getMeanPathLength());
+
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.getOperations());
+        Assertions.assertEquals(0, metrics.getMaxPathLength());
+
+        treap.setMetrics(null);
+        treap.contains(1);
+        Assertions.assertEquals(0, metrics.getOperations());
+    }
+
+    @Test
+    void testSkew() {
+        TreapMetrics balanced = new TreapMetrics();
+        Treap<Integer> random = new Treap<>(PriorityGenerator.seeded(42));
+        random.setMetrics(balanced);
+
+        // Equal priorities never rotate, so sorted insertion leaves a single right spine.
+        TreapMetrics degenerate = new TreapMetrics();
+        Treap<Integer> spine = new Treap<>(() -> PriorityGenerator.MIN_PRIORITY);
+        spine.setMetrics(degenerate);
+
+        for (int i = 0; i < 2000; i++) {
+            random.add(i);
+            spine.add(i);
+        }
+        for (int i = 0; i < 2000; i += 7) {
+            random.contains(i);
+            spine.contains(i);
+        }
+
+        Assertions.assertFalse(balanced.isSkewed(), balanced.toString());
+        Assertions.assertTrue(degenerate.isSkewed(), degenerate.toString());
+        // Adding the last key walks past all 1999 before it.
+        Assertions.assertEquals(1999, degenerate.getMaxPathLength());
+    }
+
+    @Test
+    void testConcurrentReaders() throws Exception {
+        Treap<Integer> treap = new Treap<>(PriorityGenerator.seeded(11));
+        for (int i = 0; i < 4096; i++) {
+            treap.add(i);
+        }
+        TreapMetrics single = new TreapMetrics();
+        treap.setMetrics(single);
+        for (int i = 0; i < 4096; i++) {
+            treap.contains(i);
+        }
+
+        // Concurrent lookups of a tree nobody is changing must add up to the same paths.
+        TreapMetrics shared = new TreapMetrics();
+        treap.setMetrics(shared);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < 4096; i++) {
+                        treap.contains(i);
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(THREADS * single.getPathLength(), shared.getPathLength());
+        Assertions.assertEquals(single.getMaxPathLength(), shared.getMaxPathLength());
+    }
+
+    @Test
+    void testSlowOperationEvents() throws IOException {
+        Path file = directory.resolve("treap.jfr");
+        TreapMetrics metrics = new TreapMetrics(Duration.ZERO);
+        Treap<Integer> treap = new Treap<>();
+        treap.setMetrics(metrics);
+
+        try (Recording recording = new Recording()) {
+            recording.enable(SlowOperationEvent.class).withoutThreshold();
+            recording.start();
+            treap.add(1);
+            treap.add(2);
+            treap.contains(1);
+            treap.remove(2);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("io.tmoore.treap.SlowOperation"))
+                .collect(Collectors.toList());
+        // The first add goes straight to an empty tree and is not measured.
+        Assertions.assertEquals(3, events.size());
+        Assertions.assertEquals(3, metrics.getSlowOperations());
+        Assertions.assertEquals("CONTAINS", events.get(1).getString("operation"));
+        Assertions.assertEquals(2, events.get(1).getInt("size"));
+    }
+}
@@ -4,8 +4,12 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.List;
 import java.util.Queue;
+import java.util.TreeSet;
 
 class TreapNodeTest extends TreapBaseTest {
     @Test
@@ -41,6 +45,53 @@ class TreapNodeTest extends TreapBaseTest {
         Assertions.assertEquals('K', value.charValue());
     }
 
+    @Test
+    void testSpecificRemoval() {
+        Treap<Character> treap = new Treap<>(
+                new TreapNode<>('F', 10,
+                                new TreapNode<>('T', 7,
+                                                new TreapNode<>('X', 6),
+                                                new TreapNode<>('H', 3)),
+                                new TreapNode<>('D', 8,
+                                                new TreapNode<>('E', 1),
+                                                new TreapNode<>('C', 2))));
+
+        Assertions.assertTrue(treap.remove('F'));
+        Assertions.assertEquals(6, treap.size());
+
+        TreapNode<Character> root = treap.getRoot();
+        Assertions.assertEquals('D', root.getValue().charValue());
+        Assertions.assertEquals('C', root.getLeft().getValue().charValue());
+        Assertions.assertEquals('T', root.getRight().getValue().charValue());
+        Assertions.assertEquals('X', root.getRight().getRight().getValue().charValue());
+        Assertions.assertEquals('H', root.getRight().getLeft().getValue().charValue());
+        Assertions.assertEquals('E', root.getRight().getLeft().getLeft().getValue().charValue());
+        assertInvariants(root);
+    }
+
+    @Test
+    void testSplitAtPosition() {
+        for (int index = 0; index <= randomData.size(); index += 97) {
+            List<Integer> sorted = new ArrayList<>(new TreeSet<>(randomData));
+            TreapNode<Integer> root = TreapNode.build(sorted, PriorityGenerator.threadLocal());
+            TreapNode.Split<Integer> split = TreapNode.splitAt(root, Math.min(index, sorted.size()));
+
+            Assertions.assertNull(split.equal);
+            List<Integer> less = new ArrayList<>();
+            List<Integer> greater = new ArrayList<>();
+            if (split.less != null) {
+                assertInvariants(split.less);
+                split.less.addContentsToList(less);
+            }
+            if (split.greater != null) {
+                assertInvariants(split.greater);
+                split.greater.addContentsToList(greater);
+            }
+            Assertions.assertEquals(sorted.subList(0, Math.min(index, sorted.size())), less);
+            Assertions.assertEquals(sorted.subList(Math.min(index, sorted.size()), sorted.size()), greater);
+        }
+    }
+
     @Test
     void testDepthSingleton() {
         TreapNode<Integer> root = new TreapNode<>(0);
@@ -103,4 +154,92 @@ class TreapNodeTest extends TreapBaseTest {
             }
         }
     }
+
+    @Test
+    void testDegenerateTreeIsStackSafe() {
+        final int size = 100_000;
+        final Treap<Integer> treap = new Treap<>();
+        for (int i = 0; i < size; i++) {
+            // Ascending priorities with ascending keys produce a single left-leaning chain.
+            Assertions.assertTrue(treap.add(i, i));
+        }
+
+        TreapNode<Integer> root = treap.getRoot();
+        Assertions.assertEquals(size, root.maxDepth());
+        Assertions.assertEquals(size, root.leftDepth());
+        Assertions.assertEquals(1, root.minDepth());
+        Assertions.assertTrue(treap.contains(0));
+        Assertions.assertEquals(size, treap.asList().size());
+
+        Assertions.assertTrue(treap.remove(0));
+        Assertions.assertFalse(treap.contains(0));
+        Assertions.assertEquals(size - 1, treap.size());
+
+        Treap<Integer> upper = treap.split(size / 2);
+        treap.join(upper);
+        Assertions.assertEquals(size - 1, treap.size());
+    }
+
+    @Test
+    void testInvariantsAfterRandomOperations() {
+        final Treap<Integer> treap = new Treap<>();
+        final TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < 2000; i++) {
+            final int value = random.nextInt(256);
+            if (random.nextBoolean()) {
+                Assertions.assertEquals(expected.add(value), treap.add(value));
+            }
+            else {
+                Assertions.assertEquals(expected.remove(value), treap.remove(value));
+            }
+            assertInvariants(treap.getRoot());
+            Assertions.assertEquals(expected.size(), treap.size());
+        }
+    }
+
+    /**
+     * Check the heap, binary search tree and cached size invariants of every node below the given root.
+     */
+    static <T extends Comparable<T>> void assertInvariants(TreapNode<T> root) {
+        assertInvariants(root, Comparator.naturalOrder());
+    }
+
+    /**
+     * Check the invariants of a tree ordered by the given comparator.
+     */
+    static <T> void assertInvariants(TreapNode<T> root, Comparator<? super T> order) {
+        if (root == null) {
+            return;
+        }
+
+        final Deque<TreapNode<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            TreapNode<T> current = stack.pop();
+            int size = 1;
+            if (current.getLeft() != null) {
+                Assertions.assertTrue(current.getPriority() >= current.getLeft().getPriority());
+                Assertions.assertTrue(order.compare(current.getValue(), current.getLeft().getValue()) > 0);
+                size += current.getLeft().size();
+                stack.push(current.getLeft());
+            }
+            if (current.getRight() != null) {
+                Assertions.assertTrue(current.getPriority() >= current.getRight().getPriority());
+                Assertions.assertTrue(order.compare(current.getValue(), current.getRight().getValue()) < 0);
+                size += current.getRight().size();
+                stack.push(current.getRight());
+            }
+            Assertions.assertEquals(size, current.size());
+        }
+
+        final List<T> values = new ArrayList<>();
+        root.addContentsToList(values);
+        T previous = null;
+        for (T value : values) {
+            Assertions.assertTrue(previous == null || order.compare(previous, value) < 0);
+            previous = value;
+        }
+    }
 }
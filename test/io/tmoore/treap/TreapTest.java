@@ -9,12 +9,18 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class TreapTest extends TreapBaseTest {
@@ -169,6 +175,502 @@ class TreapTest extends TreapBaseTest {
     }
 
 
+    // BULK CONSTRUCTION TESTS
+
+    @Test
+    void testConstructFromUnsorted() {
+        List<Integer> values = new ArrayList<>(randomData);
+        values.addAll(randomData);
+        Collections.shuffle(values);
+        Treap<Integer> t = new Treap<>(values);
+
+        Assertions.assertEquals(randomData.size(), t.size());
+        Assertions.assertTrue(t.containsAll(randomData));
+        TreapNodeTest.assertInvariants(t.getRoot());
+    }
+
+    @Test
+    void testConstructFromSorted() {
+        List<Integer> values = new ArrayList<>(randomData);
+        Collections.sort(values);
+        Treap<Integer> t = new Treap<>(values);
+
+        Assertions.assertEquals(values, t.asList());
+        TreapNodeTest.assertInvariants(t.getRoot());
+    }
+
+    @Test
+    void testConstructFromSortedSet() {
+        Treap<Integer> t = new Treap<>(new TreeSet<>(randomData));
+
+        Assertions.assertEquals(randomData.size(), t.size());
+        Assertions.assertTrue(t.containsAll(randomData));
+        TreapNodeTest.assertInvariants(t.getRoot());
+    }
+
+    @Test
+    void testConstructFromReverseOrderedSortedSet() {
+        TreeSet<Integer> values = new TreeSet<>(Collections.reverseOrder());
+        values.addAll(randomData);
+        Treap<Integer> t = new Treap<>(values);
+
+        Assertions.assertEquals(randomData.size(), t.size());
+        TreapNodeTest.assertInvariants(t.getRoot());
+    }
+
+    @Test
+    void testAddAllEmpty() {
+        Treap<Integer> t = new Treap<>();
+        Assertions.assertFalse(t.addAll(Collections.emptyList()));
+        Assertions.assertTrue(t.isEmpty());
+        Assertions.assertTrue(t.addAll(randomData));
+        Assertions.assertFalse(t.addAll(randomData));
+    }
+
+
+    // ORDER STATISTIC TESTS
+
+    @Test
+    void testGet() {
+        List<Integer> sorted = new ArrayList<>(randomData);
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            Assertions.assertEquals(sorted.get(i), treap.get(i));
+        }
+    }
+
+    @Test
+    void testGetOutOfBounds() {
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> treap.get(-1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> treap.get(treap.size()));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> new Treap<Integer>().get(0));
+    }
+
+    @Test
+    void testRankOf() {
+        List<Integer> sorted = new ArrayList<>(randomData);
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            Assertions.assertEquals(i, treap.rankOf(sorted.get(i)));
+        }
+        int missing = random.nextInt();
+        while (randomData.contains(missing)) {
+            missing = random.nextInt();
+        }
+        Assertions.assertEquals(-1, treap.rankOf(missing));
+    }
+
+    @Test
+    void testCountLessThan() {
+        List<Integer> sorted = new ArrayList<>(randomData);
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            Assertions.assertEquals(i, treap.countLessThan(sorted.get(i)));
+            if (sorted.get(i) != Integer.MAX_VALUE && !randomData.contains(sorted.get(i) + 1)) {
+                Assertions.assertEquals(i + 1, treap.countLessThan(sorted.get(i) + 1));
+            }
+        }
+        Assertions.assertEquals(0, new Treap<Integer>().countLessThan(0));
+    }
+
+    @Test
+    void testSizeAfterRemove() {
+        List<Integer> randomDataList = new ArrayList<>(randomData);
+        int expected = treap.size();
+        for (Integer n : randomDataList.subList(0, randomDataList.size() / 2)) {
+            treap.remove(n);
+            Assertions.assertEquals(--expected, treap.size());
+        }
+    }
+
+
+    // SPLIT AND JOIN TESTS
+
+    @Test
+    void testSplit() {
+        Integer key = treap.get(treap.size() / 3);
+        Treap<Integer> upper = treap.split(key);
+
+        Assertions.assertEquals(randomData.size(), treap.size() + upper.size());
+        for (Integer n : randomData) {
+            Assertions.assertEquals(n < key, treap.contains(n));
+            Assertions.assertEquals(n >= key, upper.contains(n));
+        }
+        TreapNodeTest.assertInvariants(treap.getRoot());
+        TreapNodeTest.assertInvariants(upper.getRoot());
+    }
+
+    @Test
+    void testSplitMissingKey() {
+        Treap<Integer> t = new Treap<>(Arrays.asList(1, 3, 5, 7));
+        Treap<Integer> upper = t.split(4);
+        Assertions.assertEquals(Arrays.asList(1, 3), t.asList());
+        Assertions.assertEquals(Arrays.asList(5, 7), upper.asList());
+    }
+
+    @Test
+    void testSplitEmpty() {
+        Treap<Integer> upper = new Treap<Integer>().split(0);
+        Assertions.assertTrue(upper.isEmpty());
+    }
+
+    @Test
+    void testJoin() {
+        Integer key = treap.get(treap.size() / 2);
+        Treap<Integer> upper = treap.split(key);
+        treap.join(upper);
+
+        Assertions.assertTrue(upper.isEmpty());
+        Assertions.assertEquals(randomData.size(), treap.size());
+        Assertions.assertTrue(treap.containsAll(randomData));
+        TreapNodeTest.assertInvariants(treap.getRoot());
+    }
+
+    @Test
+    void testJoinLesser() {
+        Integer key = treap.get(treap.size() / 2);
+        Treap<Integer> upper = treap.split(key);
+        upper.join(treap);
+
+        Assertions.assertTrue(treap.isEmpty());
+        Assertions.assertEquals(randomData.size(), upper.size());
+        Assertions.assertTrue(upper.containsAll(randomData));
+        TreapNodeTest.assertInvariants(upper.getRoot());
+    }
+
+    @Test
+    void testJoinOverlapping() {
+        Treap<Integer> t = new Treap<>(Arrays.asList(1, 5));
+        Treap<Integer> other = new Treap<>(Arrays.asList(3, 7));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> t.join(other));
+        Assertions.assertEquals(2, other.size());
+    }
+
+
+    // SET ALGEBRA TESTS
+
+    /**
+     * Large enough to take the parallel path of {@link TreapNode.SetOperation}.
+     */
+    private static final int SET_ALGEBRA_SIZE = 4 * TreapNode.SetOperation.PARALLEL_THRESHOLD;
+
+    private static TreeSet<Integer> randomSet(int size, int bound) {
+        final TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < size) {
+            set.add(random.nextInt(bound));
+        }
+        return set;
+    }
+
+    @Test
+    void testUnion() {
+        TreeSet<Integer> a = randomSet(SET_ALGEBRA_SIZE, 4 * SET_ALGEBRA_SIZE);
+        TreeSet<Integer> b = randomSet(SET_ALGEBRA_SIZE, 4 * SET_ALGEBRA_SIZE);
+        Treap<Integer> t = new Treap<>(a);
+        Treap<Integer> other = new Treap<>(b);
+
+        Assertions.assertTrue(t.union(other));
+        a.addAll(b);
+        Assertions.assertEquals(new ArrayList<>(a), t.asList());
+        Assertions.assertTrue(other.isEmpty());
+        TreapNodeTest.assertInvariants(t.getRoot());
+    }
+
+    @Test
+    void testIntersection() {
+        TreeSet<Integer> a = randomSet(SET_ALGEBRA_SIZE, 4 * SET_ALGEBRA_SIZE);
+        TreeSet<Integer> b = randomSet(SET_ALGEBRA_SIZE, 4 * SET_ALGEBRA_SIZE);
+        Treap<Integer> t = new Treap<>(a);
+
+        Assertions.assertTrue(t.intersection(new Treap<>(b)));
+        a.retainAll(b);
+        Assertions.assertEquals(new ArrayList<>(a), t.asList());
+        TreapNodeTest.assertInvariants(t.getRoot());
+    }
+
+    @Test
+    void testDifference() {
+        TreeSet<Integer> a = randomSet(SET_ALGEBRA_SIZE, 4 * SET_ALGEBRA_SIZE);
+        TreeSet<Integer> b = randomSet(SET_ALGEBRA_SIZE, 4 * SET_ALGEBRA_SIZE);
+        Treap<Integer> t = new Treap<>(a);
+
+        Assertions.assertTrue(t.difference(new Treap<>(b)));
+        a.removeAll(b);
+        Assertions.assertEquals(new ArrayList<>(a), t.asList());
+        TreapNodeTest.assertInvariants(t.getRoot());
+    }
+
+    @Test
+    void testSetAlgebraWithEmpty() {
+        Treap<Integer> t = new Treap<>(randomData);
+        Assertions.assertFalse(t.union(new Treap<>()));
+        Assertions.assertFalse(t.difference(new Treap<>()));
+        Assertions.assertEquals(randomData.size(), t.size());
+        Assertions.assertTrue(t.intersection(new Treap<>()));
+        Assertions.assertTrue(t.isEmpty());
+    }
+
+    @Test
+    void testSetAlgebraWithSelf() {
+        Assertions.assertFalse(treap.union(treap));
+        Assertions.assertFalse(treap.intersection(treap));
+        Assertions.assertEquals(randomData.size(), treap.size());
+        Assertions.assertTrue(treap.difference(treap));
+        Assertions.assertTrue(treap.isEmpty());
+    }
+
+
+    // NAVIGABLE SET TESTS
+
+    @Test
+    void testNavigation() {
+        TreeSet<Integer> expected = new TreeSet<>(randomData);
+        for (int i = 0; i < RANDOM_DATA_SIZE; i++) {
+            Integer probe = random.nextBoolean() ? random.nextInt() : treap.get(random.nextInt(treap.size()));
+            Assertions.assertEquals(expected.lower(probe), treap.lower(probe));
+            Assertions.assertEquals(expected.floor(probe), treap.floor(probe));
+            Assertions.assertEquals(expected.ceiling(probe), treap.ceiling(probe));
+            Assertions.assertEquals(expected.higher(probe), treap.higher(probe));
+        }
+        Assertions.assertEquals(expected.first(), treap.first());
+        Assertions.assertEquals(expected.last(), treap.last());
+    }
+
+    @Test
+    void testFirstLastEmpty() {
+        Treap<Integer> t = new Treap<>();
+        Assertions.assertThrows(NoSuchElementException.class, t::first);
+        Assertions.assertThrows(NoSuchElementException.class, t::last);
+        Assertions.assertNull(t.pollFirst());
+        Assertions.assertNull(t.pollLast());
+        Assertions.assertNull(t.floor(0));
+    }
+
+    @Test
+    void testPoll() {
+        TreeSet<Integer> expected = new TreeSet<>(randomData);
+        while (!expected.isEmpty()) {
+            Assertions.assertEquals(expected.pollFirst(), treap.pollFirst());
+            Assertions.assertEquals(expected.pollLast(), treap.pollLast());
+        }
+        Assertions.assertTrue(treap.isEmpty());
+    }
+
+    @Test
+    void testRangeViews() {
+        TreeSet<Integer> expected = new TreeSet<>(randomData);
+        for (int i = 0; i < RANDOM_DATA_SIZE; i++) {
+            Integer a = treap.get(random.nextInt(treap.size()));
+            Integer b = random.nextInt();
+            Integer from = Math.min(a, b);
+            Integer to = Math.max(a, b);
+            boolean fromInclusive = random.nextBoolean();
+            boolean toInclusive = random.nextBoolean();
+
+            assertSameView(expected.subSet(from, fromInclusive, to, toInclusive),
+                           treap.subSet(from, fromInclusive, to, toInclusive));
+            assertSameView(expected.headSet(a, toInclusive), treap.headSet(a, toInclusive));
+            assertSameView(expected.tailSet(a, fromInclusive), treap.tailSet(a, fromInclusive));
+            assertSameView(expected.descendingSet().headSet(a, toInclusive),
+                           treap.descendingSet().headSet(a, toInclusive));
+            assertSameView(expected.subSet(from, true, to, true).descendingSet().tailSet(a, fromInclusive),
+                           treap.subSet(from, true, to, true).descendingSet().tailSet(a, fromInclusive));
+        }
+        assertSameView(expected.descendingSet(), treap.descendingSet());
+    }
+
+    private static void assertSameView(NavigableSet<Integer> expected, NavigableSet<Integer> actual) {
+        Assertions.assertEquals(expected.size(), actual.size());
+        Assertions.assertEquals(expected.isEmpty(), actual.isEmpty());
+        Assertions.assertIterableEquals(expected, actual);
+        Assertions.assertEquals(new ArrayList<>(expected.descendingSet()), new ArrayList<>(actual.descendingSet()));
+        if (!expected.isEmpty()) {
+            Assertions.assertEquals(expected.first(), actual.first());
+            Assertions.assertEquals(expected.last(), actual.last());
+            Integer probe = expected.first() + 1;
+            Assertions.assertEquals(expected.lower(probe), actual.lower(probe));
+            Assertions.assertEquals(expected.floor(probe), actual.floor(probe));
+            Assertions.assertEquals(expected.ceiling(probe), actual.ceiling(probe));
+            Assertions.assertEquals(expected.higher(probe), actual.higher(probe));
+            Assertions.assertTrue(actual.contains(expected.first()));
+        }
+    }
+
+    @Test
+    void testRangeViewIsLive() {
+        Treap<Integer> t = new Treap<>(Arrays.asList(10, 20, 30, 40));
+        NavigableSet<Integer> view = t.subSet(15, true, 35, true);
+        Assertions.assertEquals(Arrays.asList(20, 30), new ArrayList<>(view));
+
+        t.add(25);
+        Assertions.assertEquals(3, view.size());
+        Assertions.assertTrue(view.add(16));
+        Assertions.assertTrue(t.contains(16));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> view.add(50));
+        Assertions.assertFalse(view.remove(10));
+        Assertions.assertEquals(Integer.valueOf(16), view.pollFirst());
+        Assertions.assertFalse(t.contains(16));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> view.headSet(40));
+    }
+
+    @Test
+    void testRangeViewIteratorRemove() {
+        TreeSet<Integer> expected = new TreeSet<>(randomData);
+        Integer mid = treap.get(treap.size() / 2);
+        Iterator<Integer> iterator = treap.tailSet(mid, true).iterator();
+        while (iterator.hasNext()) {
+            Integer next = iterator.next();
+            Assertions.assertTrue(expected.remove(next));
+            iterator.remove();
+        }
+        Assertions.assertEquals(expected, treap);
+        Assertions.assertEquals(expected.size(), treap.size());
+    }
+
+    @Test
+    void testRangeViewIteratorFailsFast() {
+        Treap<Integer> t = new Treap<>(Arrays.asList(10, 20, 30, 40));
+        Iterator<Integer> ascending = t.subSet(15, true, 45, true).iterator();
+        Assertions.assertEquals(Integer.valueOf(20), ascending.next());
+        t.add(25);
+        Assertions.assertThrows(ConcurrentModificationException.class, ascending::next);
+
+        Iterator<Integer> descending = t.descendingSet().iterator();
+        descending.next();
+        descending.remove();
+        Assertions.assertEquals(Integer.valueOf(30), descending.next());
+        t.remove(10);
+        Assertions.assertThrows(ConcurrentModificationException.class, descending::remove);
+    }
+
+    @Test
+    void testEqualsHashCode() {
+        Set<Integer> expected = new HashSet<>(randomData);
+        Assertions.assertEquals(expected, treap);
+        Assertions.assertEquals(treap, expected);
+        Assertions.assertEquals(expected.hashCode(), treap.hashCode());
+        treap.pollFirst();
+        Assertions.assertNotEquals(expected, treap);
+    }
+
+    @Test
+    void testInvalidRange() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> treap.subSet(2, 1));
+    }
+
+
+    // COMPARATOR TESTS
+
+    @Test
+    void testComparator() {
+        List<String> words = Arrays.asList("pear", "Apple", "fig", "apple", "Banana", "FIG", "cherry");
+        TreeSet<String> expected = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Treap<String> t = new Treap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String word : words) {
+            Assertions.assertEquals(expected.contains(word), t.contains(word));
+            Assertions.assertEquals(expected.add(word), t.add(word));
+        }
+
+        Assertions.assertSame(String.CASE_INSENSITIVE_ORDER, t.comparator());
+        Assertions.assertEquals(new ArrayList<>(expected), new ArrayList<>(t));
+        Assertions.assertTrue(t.contains("BANANA"));
+        Assertions.assertEquals(expected.headSet("C"), t.headSet("C"));
+        Assertions.assertEquals(new ArrayList<>(expected.descendingSet().headSet("c", true)),
+                                new ArrayList<>(t.descendingSet().headSet("c", true)));
+        Assertions.assertTrue(t.remove("PEAR"));
+        Assertions.assertEquals(expected.size() - 1, t.size());
+        TreapNodeTest.assertInvariants(t.getRoot(), String.CASE_INSENSITIVE_ORDER);
+
+        Treap<String> upper = t.split("C");
+        Assertions.assertEquals(Arrays.asList("cherry", "fig"), new ArrayList<>(upper));
+        Assertions.assertEquals(String.CASE_INSENSITIVE_ORDER, upper.comparator());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> t.union(new Treap<>()));
+    }
+
+    @Test
+    void testComparatorOnMixedSubclasses() {
+        Treap<Number> t = new Treap<>(Comparator.comparingDouble(Number::doubleValue));
+        t.addAll(Arrays.asList(3, 1.5, 2L, 4.25f));
+
+        Assertions.assertEquals(Arrays.asList(1.5, 2L, 3, 4.25f), new ArrayList<>(t));
+        Assertions.assertTrue(t.contains(2));
+        Assertions.assertTrue(t.contains(3.0));
+        Assertions.assertFalse(t.add(1.5f));
+        Assertions.assertTrue(t.remove(4.25));
+        Assertions.assertEquals(3, t.size());
+    }
+
+    // ACCESS-ADAPTIVE TESTS
+
+    private static <T> int depthOf(TreapNode<T> root, T item) {
+        int depth = 1;
+        for (TreapNode<T> current = root; !current.getValue().equals(item); depth++) {
+            current = TreapNode.NATURAL_ORDER.compare(item, current.getValue()) < 0
+                      ? current.getLeft()
+                      : current.getRight();
+        }
+        return depth;
+    }
+
+    @Test
+    void testAccessAdaptiveLiftsHotElements() {
+        Treap<Integer> t = new Treap<>(PriorityGenerator.seeded(7));
+        for (int i = 0; i < 4096; i++) {
+            t.add(i);
+        }
+        t.setAccessAdaptive(true);
+        Assertions.assertTrue(t.isAccessAdaptive());
+
+        List<Integer> hot = Arrays.asList(17, 1234, 3001);
+        for (int round = 0; round < 500; round++) {
+            for (Integer key : hot) {
+                Assertions.assertTrue(t.contains(key));
+            }
+            Assertions.assertFalse(t.contains(-round - 1));
+        }
+
+        for (Integer key : hot) {
+            Assertions.assertTrue(depthOf(t.getRoot(), key) <= 5, "hot key " + key + " should be near the root");
+        }
+        Assertions.assertEquals(4096, t.size());
+        TreapNodeTest.assertInvariants(t.getRoot());
+        for (TreapNode<Integer> n = t.getRoot(); n != null; n = n.getLeft()) {
+            Assertions.assertTrue(n.getPriority() <= PriorityGenerator.MAX_PRIORITY);
+        }
+    }
+
+    @Test
+    void testAccessAdaptiveRotationFailsIterators() {
+        // Each lookup draws a higher priority than any node has, so the element always reaches the root.
+        int[] next = {0};
+        Treap<Integer> t = new Treap<>(() -> ++next[0]);
+        t.addAll(Arrays.asList(1, 2, 3, 4, 5));
+        t.setAccessAdaptive(true);
+
+        Iterator<Integer> iterator = t.iterator();
+        iterator.next();
+        Assertions.assertTrue(t.contains(3));
+        Assertions.assertEquals(3, t.getRoot().getValue());
+        Assertions.assertThrows(ConcurrentModificationException.class, iterator::next);
+
+        t.setAccessAdaptive(false);
+        Iterator<Integer> plain = t.iterator();
+        plain.next();
+        Assertions.assertTrue(t.contains(1));
+        Assertions.assertEquals(3, t.getRoot().getValue());
+        Assertions.assertDoesNotThrow(plain::next);
+    }
+
+    @Test
+    void testNaturalOrderAcceptsSubclasses() {
+        Treap<Date> t = new Treap<>(Arrays.asList(new Date(1000), new Date(2000)));
+        Assertions.assertTrue(t.contains(new java.sql.Date(2000)));
+        Assertions.assertTrue(t.remove(new java.sql.Date(1000)));
+        Assertions.assertEquals(1, t.size());
+        Assertions.assertThrows(ClassCastException.class, () -> treap.contains("not an integer"));
+    }
+
+
     // ITERATOR TESTS
 
     @Test
@@ -195,6 +697,50 @@ class TreapTest extends TreapBaseTest {
         Assertions.assertThrows(IllegalStateException.class, iterator::remove);
     }
 
+    @Test
+    void testIteratorIsAscending() {
+        List<Integer> sorted = new ArrayList<>(randomData);
+        Collections.sort(sorted);
+        List<Integer> iterated = new ArrayList<>();
+        treap.iterator().forEachRemaining(iterated::add);
+        Assertions.assertEquals(sorted, iterated);
+        Assertions.assertEquals(sorted.get(0), treap.iterator().next());
+    }
+
+    @Test
+    void testIteratorRemoveKeepsInvariants() {
+        TreeSet<Integer> expected = new TreeSet<>(randomData);
+        Iterator<Integer> expectedIterator = expected.iterator();
+        Iterator<Integer> iterator = treap.iterator();
+        while (iterator.hasNext()) {
+            Integer next = iterator.next();
+            Assertions.assertEquals(expectedIterator.next(), next);
+            if (random.nextInt(3) == 0) {
+                iterator.remove();
+                expectedIterator.remove();
+                Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+            }
+        }
+        Assertions.assertThrows(NoSuchElementException.class, iterator::next);
+        Assertions.assertEquals(new ArrayList<>(expected), treap.asList());
+        TreapNodeTest.assertInvariants(treap.getRoot());
+    }
+
+    @Test
+    void testIteratorFailsFast() {
+        Iterator<Integer> iterator = treap.iterator();
+        Integer first = iterator.next();
+        treap.remove(first);
+        Assertions.assertThrows(ConcurrentModificationException.class, iterator::next);
+
+        Iterator<Integer> unchanged = treap.iterator();
+        unchanged.next();
+        Assertions.assertFalse(treap.add(treap.first()));
+        Assertions.assertDoesNotThrow(unchanged::next);
+        treap.clear();
+        Assertions.assertThrows(ConcurrentModificationException.class, unchanged::remove);
+    }
+
     @Test
     void testIteratorNextOnEmptyTreap() {
         Iterator<Integer> iterator = new Treap<Integer>().iterator();
@@ -207,10 +753,47 @@ class TreapTest extends TreapBaseTest {
     @Test
     void testRootSpliterator() {
         Spliterator<Integer> spliterator = treap.spliterator();
-        Assumptions.assumeTrue(spliterator.trySplit().tryAdvance(
-                integer -> Assertions.assertTrue(
-                        integer.equals(treap.getRoot().getRight().getValue())
-                        || integer.equals(treap.getRoot().getLeft().getValue()))));
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        Assertions.assertNotNull(prefix);
+        Assertions.assertEquals(treap.size(), prefix.estimateSize() + spliterator.estimateSize());
+        Assertions.assertTrue(Math.abs(prefix.estimateSize() - spliterator.estimateSize()) <= 1);
+
+        List<Integer> sorted = new ArrayList<>(randomData);
+        Collections.sort(sorted);
+        List<Integer> collected = new ArrayList<>();
+        prefix.forEachRemaining(collected::add);
+        spliterator.forEachRemaining(collected::add);
+        Assertions.assertEquals(sorted, collected);
+    }
+
+    @Test
+    void testSpliteratorSplitAfterAdvance() {
+        Spliterator<Integer> spliterator = treap.spliterator();
+        List<Integer> collected = new ArrayList<>();
+        Assertions.assertTrue(spliterator.tryAdvance(collected::add));
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        Assertions.assertNotNull(prefix);
+        prefix.forEachRemaining(collected::add);
+        spliterator.forEachRemaining(collected::add);
+
+        Assertions.assertEquals(treap.asList(), collected);
+        Assertions.assertEquals(0, spliterator.estimateSize());
+    }
+
+    @Test
+    void testSpliteratorCharacteristics() {
+        Spliterator<Integer> spliterator = treap.spliterator();
+        Assertions.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+        Assertions.assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        Assertions.assertNull(spliterator.getComparator());
+        Assertions.assertEquals(treap.size(), spliterator.getExactSizeIfKnown());
+    }
+
+    @Test
+    void testParallelStreamOrdered() {
+        List<Integer> sorted = new ArrayList<>(randomData);
+        Collections.sort(sorted);
+        Assertions.assertEquals(sorted, treap.parallelStream().collect(Collectors.toList()));
     }
 
     @Test